@@ -9,6 +9,7 @@ import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.List;
+import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
@@ -44,6 +45,12 @@ public class Construct extends Read<Construct>
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     @JsonCreator
     private Construct(
         @JsonProperty("@context") Context context,
@@ -63,6 +70,11 @@ public class Construct extends Read<Construct>
         return new Construct(context, construct, where, orderBy, limit, offset);
     }
 
+    Construct copyWith(List<Subject> construct)
+    {
+        return new Construct(context, construct, where, orderBy, limit, offset);
+    }
+
     @SuppressWarnings("unused")
     @JsonProperty("@construct")
     @JsonFormat(with = WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED)
@@ -71,4 +83,17 @@ public class Construct extends Read<Construct>
     {
         return construct;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || super.equals(o) &&
+            Objects.equals(construct, ((Construct)o).construct);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + Objects.hash(construct);
+    }
 }
@@ -14,23 +14,26 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
 import static com.fasterxml.jackson.core.JsonToken.*;
-import static java.util.Collections.emptyMap;
-import static java.util.Collections.unmodifiableMap;
 import static java.util.stream.Collectors.toMap;
 import static org.jsonrql.Name.name;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public final class Context
 {
-    private static final Context EMPTY_CONTEXT = new Context(null, null, null, emptyMap());
+    private static final Context EMPTY_CONTEXT = new Context(null, null, null, PersistentMap.empty());
     private final String language;
     private final Name base;
     private final Name vocab;
-    private final Map<Name, TermDef> names;
+    /**
+     * Structurally shared between derived contexts. Only re-assigned during deserialization.
+     */
+    private PersistentMap<Name, TermDef> names;
+    private int hash;
 
     public enum ContainerType
     {
@@ -95,6 +98,24 @@ public final class Context
             return type(name("@id"));
         }
 
+        @Override
+        public boolean equals(Object o)
+        {
+            return this == o || o instanceof TermDef &&
+                Objects.equals(id(), ((TermDef)o).id()) &&
+                Objects.equals(reverse(), ((TermDef)o).reverse()) &&
+                Objects.equals(type(), ((TermDef)o).type()) &&
+                Objects.equals(language(), ((TermDef)o).language()) &&
+                Objects.equals(container(), ((TermDef)o).container());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(id, reverse().orElse(null), type().orElse(null), language().orElse(null),
+                                container().orElse(null));
+        }
+
         public static class Deserializer extends Jrql.Deserializer<TermDef>
         {
             @Override
@@ -290,9 +311,7 @@ public final class Context
 
     public Context with(String name, TermDef termDef)
     {
-        final Context context = new Context(language, base, vocab, names);
-        context.names.put(name(name), termDef);
-        return context;
+        return new Context(language, base, vocab, names.plus(name(name), termDef));
     }
 
     public Context prefix(String name, String id)
@@ -300,28 +319,24 @@ public final class Context
         return with(name, termDef(id));
     }
 
+    /**
+     * Merges the other context over this one, in time proportional to the size of the other context
+     */
     public Context with(Context other)
     {
-        Context context = new Context(language, base, vocab, names);
-        if (other.base != null)
-            context = context.base(other.base);
-        if (other.vocab != null)
-            context = context.vocab(other.vocab);
-        if (other.language != null)
-            context = context.language(other.language);
-        context.names.putAll(other.names);
-        return context;
+        PersistentMap<Name, TermDef> names = this.names;
+        for (Map.Entry<Name, TermDef> entry : other.names.entrySet())
+            names = names.plus(entry.getKey(), entry.getValue());
+        return new Context(other.language != null ? other.language : language,
+                           other.base != null ? other.base : base,
+                           other.vocab != null ? other.vocab : vocab,
+                           names);
     }
 
     public Context without(Name name)
     {
-        if (names.containsKey(name))
-        {
-            final Context context = new Context(language, base, vocab, names);
-            context.names.remove(name);
-            return context;
-        }
-        return this;
+        final PersistentMap<Name, TermDef> names = this.names.minus(name);
+        return names == this.names ? this : new Context(language, base, vocab, names);
     }
 
     public Context without(String name)
@@ -331,15 +346,16 @@ public final class Context
 
     public Context without(Context other)
     {
-        Context context = new Context(language, base, vocab, names);
-        if (other.base != null && other.base.equals(base))
-            context = context.base(null);
-        if (other.vocab != null && other.vocab.equals(vocab))
-            context = context.vocab(null);
-        if (other.language != null && other.language.equals(language))
-            context = context.language(null);
-        context.names.entrySet().removeAll(other.names.entrySet());
-        return context;
+        PersistentMap<Name, TermDef> names = this.names;
+        for (Map.Entry<Name, TermDef> entry : other.names.entrySet())
+        {
+            if (names.containsKey(entry.getKey()) && Objects.equals(names.get(entry.getKey()), entry.getValue()))
+                names = names.minus(entry.getKey());
+        }
+        return new Context(other.language != null && other.language.equals(language) ? null : language,
+                           other.base != null && other.base.equals(base) ? null : base,
+                           other.vocab != null && other.vocab.equals(vocab) ? null : vocab,
+                           names);
     }
 
     public Map<String, String> prefixes()
@@ -360,7 +376,7 @@ public final class Context
 
     public Map<Name, TermDef> names()
     {
-        return unmodifiableMap(names);
+        return names;
     }
 
     @JsonIgnore public boolean isEmpty()
@@ -368,22 +384,42 @@ public final class Context
         return language == null && base == null && vocab == null && names.isEmpty();
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o instanceof Context &&
+            hashCode() == o.hashCode() &&
+            Objects.equals(language, ((Context)o).language) &&
+            Objects.equals(base, ((Context)o).base) &&
+            Objects.equals(vocab, ((Context)o).vocab) &&
+            Objects.equals(names, ((Context)o).names);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        // Memoised, as contexts are used as cache keys
+        if (hash == 0)
+            hash = Objects.hash(language, base, vocab, names);
+        return hash;
+    }
+
     @JsonCreator private Context(@JsonProperty("@language") String language,
                                  @JsonProperty("@base") Name base,
                                  @JsonProperty("@vocab") Name vocab)
     {
-        this(language, base, vocab, emptyMap());
+        this(language, base, vocab, PersistentMap.empty());
     }
 
     private Context(String language,
                     Name base,
                     Name vocab,
-                    Map<Name, TermDef> names)
+                    PersistentMap<Name, TermDef> names)
     {
         this.language = language;
         this.base = base;
         this.vocab = vocab;
-        this.names = new HashMap<>(names);
+        this.names = names;
     }
 
     @JsonProperty("@language")
@@ -416,6 +452,7 @@ public final class Context
     @JsonAnySetter
     private void setTermDef(String name, TermDef termDef)
     {
-        names.put(name(name), termDef);
+        names = names.plus(name(name), termDef);
+        hash = 0; // Invalidate any memoised hash
     }
 }
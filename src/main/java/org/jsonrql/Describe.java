@@ -9,6 +9,7 @@ import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.List;
+import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
@@ -45,6 +46,12 @@ public class Describe extends Read<Describe>
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     @JsonCreator
     private Describe(
         @JsonProperty("@context") Context context,
@@ -72,4 +79,17 @@ public class Describe extends Read<Describe>
     {
         return describe;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || super.equals(o) &&
+            Objects.equals(describe, ((Describe)o).describe);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + Objects.hash(describe);
+    }
 }
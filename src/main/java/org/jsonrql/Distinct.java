@@ -9,6 +9,7 @@ import com.fasterxml.jackson.annotation.*;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.List;
+import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
@@ -51,6 +52,12 @@ public class Distinct extends Read<Distinct>
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     @JsonCreator
     private Distinct(
         @JsonProperty("@context") Context context,
@@ -78,4 +85,17 @@ public class Distinct extends Read<Distinct>
     {
         return distinct;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || super.equals(o) &&
+            Objects.equals(distinct, ((Distinct)o).distinct);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + Objects.hash(distinct);
+    }
 }
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
@@ -23,6 +24,7 @@ public final class Group extends Pattern
     private final List<Subject> graph;
     private final List<Expression> filter;
     protected final List<Pattern> union;
+    private int hash;
 
     public static Group group(List<Subject> graph)
     {
@@ -44,6 +46,65 @@ public final class Group extends Pattern
         return union(asList(union));
     }
 
+    /**
+     * Accumulates the clauses of a group mutably, without copying on each call
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public static final class Builder
+    {
+        private Context context;
+        private List<Subject> graph;
+        private List<Expression> filter;
+        private List<Pattern> union;
+
+        private Builder()
+        {
+        }
+
+        public Builder context(Context context)
+        {
+            this.context = context;
+            return this;
+        }
+
+        public Builder graph(Subject... graph)
+        {
+            this.graph = addAll(this.graph, graph);
+            return this;
+        }
+
+        public Builder filter(Expression... filter)
+        {
+            this.filter = addAll(this.filter, filter);
+            return this;
+        }
+
+        public Builder union(Pattern... union)
+        {
+            this.union = addAll(this.union, union);
+            return this;
+        }
+
+        public Group build()
+        {
+            return new Group(context, graph, filter, union);
+        }
+    }
+
+    @SafeVarargs
+    static <T> List<T> addAll(List<T> list, T... items)
+    {
+        if (list == null)
+            list = new ArrayList<>();
+        for (T item : items)
+            list.add(item);
+        return list;
+    }
+
     @JsonIgnore
     public Optional<List<Subject>> graph()
     {
@@ -120,4 +181,29 @@ public final class Group extends Pattern
     {
         visitor.visit(this);
     }
+
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o instanceof Group &&
+            hashCode() == o.hashCode() &&
+            Objects.equals(graph, ((Group)o).graph) &&
+            Objects.equals(filter, ((Group)o).filter) &&
+            Objects.equals(union, ((Group)o).union) &&
+            Objects.equals(context, ((Group)o).context);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (hash == 0)
+            hash = Objects.hash(graph, filter, union, context);
+        return hash;
+    }
 }
@@ -38,6 +38,6 @@ public interface Id extends Value, Expression
 
     static Id id(String text)
     {
-        return matchVar(text).map(Id.class::cast).orElse(name(text));
+        return matchVar(text).map(Id.class::cast).orElseGet(() -> name(text));
     }
 }
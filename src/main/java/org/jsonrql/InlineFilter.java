@@ -11,6 +11,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
@@ -24,6 +25,7 @@ public final class InlineFilter implements Value
 {
     private final Variable variable;
     private final Map<String, List<Expression>> filters;
+    private int hash;
 
     public static InlineFilter filter(String variable, String operator, Expression... arguments)
     {
@@ -40,6 +42,12 @@ public final class InlineFilter implements Value
         this.filters = new HashMap<>();
     }
 
+    InlineFilter(Variable variable, Map<String, List<Expression>> filters)
+    {
+        this.variable = variable;
+        this.filters = filters;
+    }
+
     @JsonProperty("@id")
     public Variable variable()
     {
@@ -70,4 +78,27 @@ public final class InlineFilter implements Value
     {
         visitor.visit(this);
     }
+
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o instanceof InlineFilter &&
+            hashCode() == o.hashCode() &&
+            Objects.equals(variable, ((InlineFilter)o).variable) &&
+            Objects.equals(filters, ((InlineFilter)o).filters);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        if (hash == 0)
+            hash = Objects.hash(variable, filters);
+        return hash;
+    }
 }
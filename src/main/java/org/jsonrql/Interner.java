@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntFunction;
+
+import static java.lang.String.format;
+
+/**
+ * An opt-in hash-consing factory for <b>json-rql</b> AST nodes. Structurally equal subjects, groups, inline
+ * filters, literals, names and variables are reduced to one shared instance, so that interned nodes can be
+ * compared by identity, and deduplicated caches of queries retain each distinct fragment only once.
+ * <p>
+ * Each interned node also has a 64-bit structural fingerprint, for use as a compact key in external caches.
+ * <p>
+ * Interned nodes are retained for the life of the interner, so an interner should be scoped to the cache it
+ * serves. Interners are thread-safe.
+ */
+public final class Interner
+{
+    private static final long NAME = 1, VARIABLE = 2, LITERAL = 3, SUBJECT = 4, INLINE_FILTER = 5, GROUP = 6;
+
+    private final ConcurrentMap<Jrql, Canonical> canonical = new ConcurrentHashMap<>();
+    private final Jrql.Transform<Canonical> intern = new Jrql.Transform<Canonical>()
+    {
+        @Override public Canonical map(Name name)
+        {
+            return new Canonical(name, mix(NAME, fingerprint(name.toString())));
+        }
+
+        @Override public Canonical map(Variable variable)
+        {
+            return new Canonical(variable, mix(VARIABLE, fingerprint(variable.name())));
+        }
+
+        @Override public Canonical map(Literal literal)
+        {
+            long fp = mix(LITERAL, fingerprint(literal.value().getClass().getName()));
+            fp = mix(fp, fingerprint(literal.value().toString()));
+            fp = mix(fp, literal.type().map(Interner.this::fingerprint).orElse(0L));
+            fp = mix(fp, literal.language().map(Interner::fingerprint).orElse(0L));
+            return new Canonical(literal, fp);
+        }
+
+        @Override public Canonical map(Subject subject)
+        {
+            final Subject.Builder builder = Subject.builder()
+                .context(subject.context)
+                .id(subject.id().map(Interner.this::intern).orElse(null))
+                .type(subject.type().map(Interner.this::intern).orElse(null));
+            long fp = mix(SUBJECT, subject.id().map(Interner.this::fingerprint).orElse(0L));
+            fp = mix(fp, subject.type().map(Interner.this::fingerprint).orElse(0L));
+            fp = mix(fp, subject.context().hashCode());
+            long properties = 0;
+            for (Map.Entry<Id, List<Value>> property : subject.properties().entrySet())
+            {
+                final Value[] values = internAll(property.getValue(), Value[]::new);
+                builder.with(intern(property.getKey()), values);
+                // Property order is not significant
+                properties += mix(fingerprint(property.getKey()), fingerprint(values));
+            }
+            return new Canonical(builder.build(), mix(fp, properties));
+        }
+
+        @Override public Canonical map(InlineFilter inlineFilter)
+        {
+            final Map<String, List<Expression>> filters = new HashMap<>();
+            long fp = mix(INLINE_FILTER, fingerprint(inlineFilter.variable()));
+            long operations = 0;
+            for (Map.Entry<String, List<Expression>> filter : inlineFilter.filters().entrySet())
+            {
+                final Expression[] arguments = internAll(filter.getValue(), Expression[]::new);
+                filters.put(filter.getKey(), Collections.unmodifiableList(Arrays.asList(arguments)));
+                operations += mix(fingerprint(filter.getKey()), fingerprint(arguments));
+            }
+            return new Canonical(new InlineFilter(intern(inlineFilter.variable()), filters), mix(fp, operations));
+        }
+
+        @Override public Canonical map(Group group)
+        {
+            final Group.Builder builder = Group.builder().context(group.context);
+            long fp = mix(GROUP, group.context().hashCode());
+            if (group.graph().isPresent())
+            {
+                final Subject[] graph = internAll(group.graph().get(), Subject[]::new);
+                builder.graph(graph);
+                fp = mix(fp, fingerprint(graph));
+            }
+            fp = mix(fp, 0);
+            if (group.filter().isPresent())
+            {
+                final Expression[] filter = internAll(group.filter().get(), Expression[]::new);
+                builder.filter(filter);
+                fp = mix(fp, fingerprint(filter));
+            }
+            fp = mix(fp, 0);
+            if (group.union().isPresent())
+            {
+                final Pattern[] union = internAll(group.union().get(), Pattern[]::new);
+                builder.union(union);
+                fp = mix(fp, fingerprint(union));
+            }
+            return new Canonical(builder.build(), fp);
+        }
+    };
+
+    /**
+     * @return the shared instance structurally equal to the given node
+     * @throws IllegalArgumentException if the node, or any node it contains, is not of an internable kind
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Jrql> T intern(T node)
+    {
+        return node == null ? null : (T)canonical(node).node;
+    }
+
+    /**
+     * @return the structural fingerprint of the given node, interning it if necessary
+     */
+    public long fingerprint(Jrql node)
+    {
+        return node == null ? 0 : canonical(node).fingerprint;
+    }
+
+    public int size()
+    {
+        return canonical.size();
+    }
+
+    private Canonical canonical(Jrql node)
+    {
+        final Canonical existing = canonical.get(node);
+        if (existing != null)
+            return existing;
+
+        final Canonical built = Jrql.map(node, intern);
+        if (built == null)
+            throw new IllegalArgumentException(format("Cannot intern %s", node.getClass().getSimpleName()));
+
+        final Canonical raced = canonical.putIfAbsent(built.node, built);
+        return raced == null ? built : raced;
+    }
+
+    private <T extends Jrql> T[] internAll(List<? extends T> nodes, IntFunction<T[]> newArray)
+    {
+        final T[] interned = newArray.apply(nodes.size());
+        for (int i = 0; i < interned.length; i++)
+            interned[i] = intern(nodes.get(i));
+        return interned;
+    }
+
+    private long fingerprint(Jrql[] interned)
+    {
+        long fp = interned.length;
+        for (Jrql node : interned)
+            fp = mix(fp, fingerprint(node));
+        return fp;
+    }
+
+    /**
+     * 64-bit FNV-1a
+     */
+    private static long fingerprint(String str)
+    {
+        long fp = 0xcbf29ce484222325L;
+        for (int i = 0; i < str.length(); i++)
+        {
+            fp ^= str.charAt(i);
+            fp *= 0x100000001b3L;
+        }
+        return fp;
+    }
+
+    private static long mix(long fp, long value)
+    {
+        fp = (fp ^ value) * 0x9e3779b97f4a7c15L;
+        return fp ^ (fp >>> 32);
+    }
+
+    private static final class Canonical
+    {
+        final Jrql node;
+        final long fingerprint;
+
+        Canonical(Jrql node, long fingerprint)
+        {
+            this.node = node;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -7,18 +7,17 @@ package org.jsonrql;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.TreeTraversingParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.jsonrql.Result.Star;
 
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Function;
-import java.util.stream.Stream;
 
+import static com.fasterxml.jackson.core.JsonToken.FIELD_NAME;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
 
@@ -28,13 +27,13 @@ public interface Jrql
     {
         default T map(Jrql jrql) { return null; }
         default T map(Star star) { return map((Jrql)star); }
-        default T map(Query query) { return map((Jrql)query); }
-        default T map(Read read) { return map((Query)read); }
-        default T map(Construct construct) { return map((Read)construct); }
-        default T map(Describe describe) { return map((Read)describe); }
-        default T map(Distinct distinct) { return map((Read)distinct); }
-        default T map(Select select) { return map((Read)select); }
-        default T map(Update update) { return map((Query)update); }
+        default T map(Query<?> query) { return map((Jrql)query); }
+        default T map(Read<?> read) { return map((Query<?>)read); }
+        default T map(Construct construct) { return map((Read<?>)construct); }
+        default T map(Describe describe) { return map((Read<?>)describe); }
+        default T map(Distinct distinct) { return map((Read<?>)distinct); }
+        default T map(Select select) { return map((Read<?>)select); }
+        default T map(Update update) { return map((Query<?>)update); }
         default T map(VariableAssignment variableAssignment) { return map((Jrql)variableAssignment); }
         default T map(Variable variable) { return map((Jrql)variable); }
         default T map(Subject subject) { return map((Jrql)subject); }
@@ -48,13 +47,13 @@ public interface Jrql
     {
         default void visit(Jrql jrql) {}
         default void visit(Star star) { visit((Jrql)star); }
-        default void visit(Query query) { visit((Jrql)query); }
-        default void visit(Read read) { visit((Query)read); }
-        default void visit(Construct construct) { visit((Read)construct); }
-        default void visit(Describe describe) { visit((Read)describe); }
-        default void visit(Distinct distinct) { visit((Read)distinct); }
-        default void visit(Select select) { visit((Read)select); }
-        default void visit(Update update) { visit((Query)update); }
+        default void visit(Query<?> query) { visit((Jrql)query); }
+        default void visit(Read<?> read) { visit((Query<?>)read); }
+        default void visit(Construct construct) { visit((Read<?>)construct); }
+        default void visit(Describe describe) { visit((Read<?>)describe); }
+        default void visit(Distinct distinct) { visit((Read<?>)distinct); }
+        default void visit(Select select) { visit((Read<?>)select); }
+        default void visit(Update update) { visit((Query<?>)update); }
         default void visit(VariableAssignment variableAssignment) { visit((Jrql)variableAssignment); }
         default void visit(Variable variable) { visit((Jrql)variable); }
         default void visit(Subject subject) { visit((Jrql)subject); }
@@ -66,112 +65,151 @@ public interface Jrql
 
     void accept(Visitor visitor);
 
-    static <T> T map(Jrql jrql, Transform<T> transform)
+    /**
+     * Dispatches to the transform's method for this node's own type. The node types of this library override
+     * this to dispatch without allocation; other implementations fall back to dispatch by {@link #accept}.
+     */
+    default <T> T apply(Transform<T> transform)
     {
-        if (jrql == null)
-            return null;
-
-        final AtomicReference<T> ref = new AtomicReference<>();
-        jrql.accept(new Visitor()
+        final AtomicReference<T> mapped = new AtomicReference<>();
+        accept(new Visitor()
         {
             @Override public void visit(Jrql jrql)
             {
-                ref.set(transform.map(jrql));
+                mapped.set(transform.map(jrql));
             }
 
             @Override public void visit(Star star)
             {
-                ref.set(transform.map(star));
+                mapped.set(transform.map(star));
             }
 
-            @Override public void visit(Query query)
+            @Override public void visit(Query<?> query)
             {
-                ref.set(transform.map(query));
+                mapped.set(transform.map(query));
             }
 
-            @Override public void visit(Read read)
+            @Override public void visit(Read<?> read)
             {
-                ref.set(transform.map(read));
+                mapped.set(transform.map(read));
             }
 
             @Override public void visit(Construct construct)
             {
-                ref.set(transform.map(construct));
+                mapped.set(transform.map(construct));
             }
 
             @Override public void visit(Describe describe)
             {
-                ref.set(transform.map(describe));
+                mapped.set(transform.map(describe));
             }
 
             @Override public void visit(Distinct distinct)
             {
-                ref.set(transform.map(distinct));
+                mapped.set(transform.map(distinct));
             }
 
             @Override public void visit(Select select)
             {
-                ref.set(transform.map(select));
+                mapped.set(transform.map(select));
             }
 
             @Override public void visit(Update update)
             {
-                ref.set(transform.map(update));
+                mapped.set(transform.map(update));
             }
 
-            @Override public void visit(VariableAssignment va)
+            @Override public void visit(VariableAssignment variableAssignment)
             {
-                ref.set(transform.map(va));
+                mapped.set(transform.map(variableAssignment));
             }
 
             @Override public void visit(Variable variable)
             {
-                ref.set(transform.map(variable));
+                mapped.set(transform.map(variable));
             }
 
             @Override public void visit(Subject subject)
             {
-                ref.set(transform.map(subject));
+                mapped.set(transform.map(subject));
             }
 
             @Override public void visit(Name name)
             {
-                ref.set(transform.map(name));
+                mapped.set(transform.map(name));
             }
 
             @Override public void visit(Literal literal)
             {
-                ref.set(transform.map(literal));
+                mapped.set(transform.map(literal));
             }
 
             @Override public void visit(InlineFilter inlineFilter)
             {
-                ref.set(transform.map(inlineFilter));
+                mapped.set(transform.map(inlineFilter));
             }
 
             @Override public void visit(Group group)
             {
-                ref.set(transform.map(group));
+                mapped.set(transform.map(group));
             }
         });
-        return ref.get();
+        return mapped.get();
+    }
+
+    static <T> T map(Jrql jrql, Transform<T> transform)
+    {
+        return jrql == null ? null : jrql.apply(transform);
     }
 
     abstract class Deserializer<T> extends JsonDeserializer<T>
     {
-        T readAhead(JsonParser p,
-                    DeserializationContext ctxt,
-                    Function<JsonNode, Class<? extends T>> decideType) throws IOException
+        /**
+         * Reads an object whose target type depends on its keys. Fields are buffered only until the type is
+         * decided, after which the rest of the object is streamed directly from the parser.
+         */
+        T readDeciding(JsonParser p, DeserializationContext ctxt, TypeDecision<T> decision) throws IOException
+        {
+            final TokenBuffer buffer = new TokenBuffer(p, ctxt);
+            buffer.writeStartObject();
+            for (JsonToken token = p.nextToken(); token == FIELD_NAME; token = p.nextToken())
+            {
+                final String field = p.getCurrentName();
+                buffer.writeFieldName(field);
+                final Class<? extends T> type = decision.decide(field);
+                if (type != null)
+                {
+                    // Continue from the value of the deciding field
+                    final JsonParser parser = JsonParserSequence.createFlattened(false, buffer.asParser(p), p);
+                    parser.nextToken();
+                    return ctxt.readValue(parser, type);
+                }
+                p.nextToken();
+                buffer.copyCurrentStructure(p);
+            }
+            buffer.writeEndObject();
+            final JsonParser parser = buffer.asParser(p);
+            parser.nextToken();
+            return ctxt.readValue(parser, decision.decide());
+        }
+
+        interface TypeDecision<T>
         {
-            final JsonNode node = p.readValueAsTree();
-            final JsonParser nodeParser = new TreeTraversingParser(node, p.getCodec());
-            nodeParser.nextToken();
-            return ctxt.readValue(nodeParser, decideType.apply(node));
+            /**
+             * @return the target type if it is decided by the presence of the given field, otherwise
+             * <code>null</code>
+             */
+            Class<? extends T> decide(String field);
+
+            /**
+             * @return the target type, having seen all the fields of the object
+             */
+            Class<? extends T> decide();
         }
 
-        static Stream<String> fieldsOf(JsonNode node)
+        static boolean isKeyword(String field)
         {
-            return Stream.generate(node.fieldNames()::next).limit(node.size());
+            return field.startsWith("@");
         }
 
         static JsonMappingException badToken(JsonParser p, JsonToken... allowedTokens)
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Jackson module for the <b>json-rql</b> AST, registering the deserializers of its abstract types.
+ * <p>
+ * Also provides a shared mapper with the module installed, and thread-safe readers and writers for it,
+ * which are prepared once so that reading and writing does not repeat annotation introspection.
+ */
+public final class JsonRqlModule extends SimpleModule
+{
+    private static final long serialVersionUID = 1L;
+
+    public JsonRqlModule()
+    {
+        super("json-rql");
+        addDeserializer(Pattern.class, new Pattern.Deserializer());
+        addDeserializer(Value.class, new Value.Deserializer());
+        addDeserializer(Id.class, new Id.Deserializer());
+        addDeserializer(Expression.class, new Expression.Deserializer());
+        addDeserializer(Literal.class, new Literal.Deserializer());
+        addDeserializer(Result.class, new Result.Deserializer());
+    }
+
+    public static ObjectMapper mapper()
+    {
+        return Shared.MAPPER;
+    }
+
+    public static ObjectReader queryReader()
+    {
+        return Shared.QUERY_READER;
+    }
+
+    public static ObjectReader patternReader()
+    {
+        return Shared.PATTERN_READER;
+    }
+
+    public static ObjectReader subjectReader()
+    {
+        return Shared.SUBJECT_READER;
+    }
+
+    public static ObjectWriter writer()
+    {
+        return Shared.WRITER;
+    }
+
+    public static ObjectWriter prettyWriter()
+    {
+        return Shared.PRETTY_WRITER;
+    }
+
+    /**
+     * Initialised on first use, so that the module can be loaded without preparing the shared mapper
+     */
+    private static final class Shared
+    {
+        static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new JsonRqlModule());
+        static final ObjectReader QUERY_READER = MAPPER.readerFor(Query.class);
+        static final ObjectReader PATTERN_READER = MAPPER.readerFor(Pattern.class);
+        static final ObjectReader SUBJECT_READER = MAPPER.readerFor(Subject.class);
+        static final ObjectWriter WRITER = MAPPER.writer();
+        static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+
+        static
+        {
+            // Serializers are looked up by runtime type, so prepare them for each concrete type
+            for (Class<?> type : new Class<?>[]{
+                Select.class, Distinct.class, Construct.class, Describe.class, Update.class,
+                Group.class, Subject.class, Context.class, Name.class, Variable.class,
+                Literal.PlainLiteral.class, Literal.QualifiedLiteral.class, Literal.IntLiteral.class,
+                Literal.LongLiteral.class, Literal.DoubleLiteral.class, Literal.BooleanLiteral.class,
+                Literal.DecimalLiteral.class, InlineFilter.class})
+                MAPPER.canSerialize(type);
+        }
+    }
+}
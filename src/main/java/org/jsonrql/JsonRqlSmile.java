@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Readers and writers for the <b>json-rql</b> AST in the binary Smile format, for transport and caching
+ * between services. Requires the optional <code>jackson-dataformat-smile</code> dependency.
+ * <p>
+ * Repeated field names, such as keywords and properties, and repeated short string values, such as
+ * variables and IRIs, are written as back-references.
+ */
+public final class JsonRqlSmile
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper(
+        SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build())
+        .registerModule(new JsonRqlModule());
+    private static final ObjectReader QUERY_READER = MAPPER.readerFor(Query.class);
+    private static final ObjectReader PATTERN_READER = MAPPER.readerFor(Pattern.class);
+    private static final ObjectWriter WRITER = MAPPER.writer();
+
+    private JsonRqlSmile()
+    {
+    }
+
+    public static ObjectMapper mapper()
+    {
+        return MAPPER;
+    }
+
+    public static ObjectReader queryReader()
+    {
+        return QUERY_READER;
+    }
+
+    public static ObjectReader patternReader()
+    {
+        return PATTERN_READER;
+    }
+
+    public static ObjectWriter writer()
+    {
+        return WRITER;
+    }
+}
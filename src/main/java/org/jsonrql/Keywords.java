@@ -7,7 +7,6 @@ package org.jsonrql;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 import java.net.URL;
@@ -24,7 +23,7 @@ public final class Keywords
         try
         {
             final URL resource = Keywords.class.getClassLoader().getResource("keywords.json");
-            KEYWORDS = new ObjectMapper().readValue(resource, Keywords.class);
+            KEYWORDS = JsonRqlModule.mapper().readValue(resource, Keywords.class);
         }
         catch (IOException e)
         {
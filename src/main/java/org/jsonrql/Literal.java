@@ -6,11 +6,17 @@
 package org.jsonrql;
 
 import com.fasterxml.jackson.annotation.*;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -20,7 +26,7 @@ import static com.fasterxml.jackson.core.JsonToken.*;
 @JsonDeserialize(using = Literal.Deserializer.class)
 public abstract class Literal implements Value, Expression
 {
-    private final Object value;
+    private int hash;
 
     public static Literal literal(String value)
     {
@@ -29,61 +35,83 @@ public abstract class Literal implements Value, Expression
 
     public static Literal literal(int value)
     {
-        return new PlainLiteral(value);
+        return new IntLiteral(value);
+    }
+
+    public static Literal literal(long value)
+    {
+        // As parsed from JSON, so that literals round-trip
+        return value == (int)value ? new IntLiteral((int)value) : new LongLiteral(value);
     }
 
     public static Literal literal(double value)
     {
-        return new PlainLiteral(value);
+        return new DoubleLiteral(value);
     }
 
     public static Literal literal(boolean value)
     {
-        return new PlainLiteral(value);
+        return value ? BooleanLiteral.TRUE : BooleanLiteral.FALSE;
+    }
+
+    /**
+     * The decimal is written to JSON exactly, but like any JSON number it is an integer in RDF if it has no
+     * fraction or exponent, and otherwise a double
+     */
+    public static Literal literal(BigDecimal value)
+    {
+        return new DecimalLiteral(value);
     }
 
     public abstract Optional<String> language();
 
     public Literal language(String language)
     {
-        return new QualifiedLiteral(value, type().orElse(null), language);
+        return new QualifiedLiteral(value(), type().orElse(null), language);
     }
 
     public abstract Optional<Id> type();
 
     public Literal type(Id type)
     {
-        return new QualifiedLiteral(value, type, language().orElse(null));
+        return new QualifiedLiteral(value(), type, language().orElse(null));
+    }
+
+    private Literal()
+    {
     }
 
-    private Literal(Object value)
+    private static Object checkValue(Object value)
     {
         if (!(value instanceof String
             || value instanceof Integer
+            || value instanceof Long
             || value instanceof Double
             || value instanceof Float
+            || value instanceof BigDecimal
+            || value instanceof BigInteger
             || value instanceof Boolean))
             throw new IllegalArgumentException("Expected JSON atomic value type");
 
-        this.value = value;
-    }
-
-    public Object value()
-    {
         return value;
     }
 
+    /**
+     * @return the value, boxed if this literal is specialised for a primitive type
+     */
+    public abstract Object value();
+
     @Override
     public String toString()
     {
-        return value.toString();
+        return value().toString();
     }
 
     @Override
     public boolean equals(Object o)
     {
         return this == o || o instanceof Literal &&
-            Objects.equals(value, ((Literal) o).value) &&
+            Objects.equals(value(), ((Literal) o).value()) &&
             Objects.equals(type(), ((Literal) o).type()) &&
             Objects.equals(language(), ((Literal) o).language());
     }
@@ -91,11 +119,18 @@ public abstract class Literal implements Value, Expression
     @Override
     public int hashCode()
     {
-        return Objects.hash(value, type(), language());
+        if (hash == 0)
+            hash = Objects.hash(value(), type().orElse(null), language().orElse(null));
+        return hash;
     }
 
     public static class Deserializer extends Jrql.Deserializer<Literal>
     {
+        /**
+         * Any double can be written in 17 significant digits
+         */
+        private static final int MAX_DOUBLE_DIGITS = 17;
+
         @Override
         public Literal deserialize(JsonParser p, DeserializationContext ctxt) throws IOException
         {
@@ -105,11 +140,37 @@ public abstract class Literal implements Value, Expression
                     return ctxt.readValue(p, QualifiedLiteral.class);
 
                 case VALUE_STRING:
+                    return new PlainLiteral(p.getText());
+
                 case VALUE_NUMBER_INT:
+                    switch (p.getNumberType())
+                    {
+                        case INT:
+                            return new IntLiteral(p.getIntValue());
+                        case LONG:
+                            return new LongLiteral(p.getLongValue());
+                        default:
+                            return new DecimalLiteral(new BigDecimal(p.getBigIntegerValue()));
+                    }
+
                 case VALUE_NUMBER_FLOAT:
+                    if (p.getNumberType() == JsonParser.NumberType.BIG_DECIMAL ||
+                        significantDigits(p) > MAX_DOUBLE_DIGITS)
+                    {
+                        // Only numbers that cannot be represented as a double are kept as decimals, to round-trip
+                        final BigDecimal decimal = p.getDecimalValue();
+                        final double number = decimal.doubleValue();
+                        return Double.isFinite(number) &&
+                            new BigDecimal(Double.toString(number)).compareTo(decimal) == 0 ?
+                            new DoubleLiteral(number) : new DecimalLiteral(decimal);
+                    }
+                    return new DoubleLiteral(p.getDoubleValue());
+
                 case VALUE_TRUE:
+                    return BooleanLiteral.TRUE;
+
                 case VALUE_FALSE:
-                    return ctxt.readValue(p, PlainLiteral.class);
+                    return BooleanLiteral.FALSE;
 
                 case VALUE_NULL:
                     return null;
@@ -121,13 +182,35 @@ public abstract class Literal implements Value, Expression
         }
     }
 
+    /**
+     * @return the number of significant digits in the current number token, ignoring any sign, leading zeros
+     * and exponent
+     */
+    private static int significantDigits(JsonParser p) throws IOException
+    {
+        final char[] text = p.getTextCharacters();
+        final int end = p.getTextOffset() + p.getTextLength();
+        int digits = 0;
+        for (int i = p.getTextOffset(); i < end && text[i] != 'e' && text[i] != 'E'; i++)
+        {
+            if (text[i] >= '1' && text[i] <= '9' || text[i] == '0' && digits > 0)
+                digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * A plain JSON string, or a JSON number without a specialised literal type
+     */
     @JsonDeserialize
     public static final class PlainLiteral extends Literal
     {
+        private final Object value;
+
         @JsonCreator
         PlainLiteral(Object value)
         {
-            super(value);
+            this.value = checkValue(value);
         }
 
         @Override
@@ -148,7 +231,7 @@ public abstract class Literal implements Value, Expression
         @JsonValue
         public Object value()
         {
-            return super.value();
+            return value;
         }
 
         @Override
@@ -156,11 +239,244 @@ public abstract class Literal implements Value, Expression
         {
             visitor.visit(this);
         }
+
+        @Override
+        public <T> T apply(Transform<T> transform)
+        {
+            return transform.map(this);
+        }
+    }
+
+    /**
+     * A plain JSON number or boolean, stored unboxed and written directly to the JSON generator
+     */
+    public static abstract class PrimitiveLiteral extends Literal implements JsonSerializable
+    {
+        private PrimitiveLiteral()
+        {
+        }
+
+        @Override
+        public Optional<String> language()
+        {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Id> type()
+        {
+            return Optional.empty();
+        }
+
+        @Override
+        public void accept(Visitor visitor)
+        {
+            visitor.visit(this);
+        }
+
+        @Override
+        public <T> T apply(Transform<T> transform)
+        {
+            return transform.map(this);
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException
+        {
+            serialize(gen, serializers);
+        }
+    }
+
+    public static final class IntLiteral extends PrimitiveLiteral
+    {
+        private final int value;
+
+        IntLiteral(int value)
+        {
+            this.value = value;
+        }
+
+        public int intValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return Integer.toString(value);
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException
+        {
+            gen.writeNumber(value);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof IntLiteral ? value == ((IntLiteral)o).value : super.equals(o);
+        }
+    }
+
+    public static final class LongLiteral extends PrimitiveLiteral
+    {
+        private final long value;
+
+        LongLiteral(long value)
+        {
+            this.value = value;
+        }
+
+        public long longValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return Long.toString(value);
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException
+        {
+            gen.writeNumber(value);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof LongLiteral ? value == ((LongLiteral)o).value : super.equals(o);
+        }
+    }
+
+    public static final class DoubleLiteral extends PrimitiveLiteral
+    {
+        private final double value;
+
+        DoubleLiteral(double value)
+        {
+            this.value = value;
+        }
+
+        public double doubleValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return Double.toString(value);
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException
+        {
+            gen.writeNumber(value);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            // As for Double.equals
+            return o instanceof DoubleLiteral ?
+                Double.doubleToLongBits(value) == Double.doubleToLongBits(((DoubleLiteral)o).value) :
+                super.equals(o);
+        }
+    }
+
+    public static final class BooleanLiteral extends PrimitiveLiteral
+    {
+        private static final BooleanLiteral TRUE = new BooleanLiteral(true), FALSE = new BooleanLiteral(false);
+
+        private final boolean value;
+
+        private BooleanLiteral(boolean value)
+        {
+            this.value = value;
+        }
+
+        public boolean booleanValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return Boolean.toString(value);
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException
+        {
+            gen.writeBoolean(value);
+        }
+    }
+
+    /**
+     * An arbitrary-precision number, which is not rounded through a double
+     */
+    public static final class DecimalLiteral extends PrimitiveLiteral
+    {
+        private final BigDecimal value;
+
+        DecimalLiteral(BigDecimal value)
+        {
+            this.value = Objects.requireNonNull(value);
+        }
+
+        public BigDecimal decimalValue()
+        {
+            return value;
+        }
+
+        @Override
+        public Object value()
+        {
+            return value;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException
+        {
+            gen.writeNumber(value);
+        }
     }
 
     @JsonDeserialize
     public static final class QualifiedLiteral extends Literal
     {
+        private final Object value;
         private final Id type;
         private final String language;
 
@@ -169,7 +485,7 @@ public abstract class Literal implements Value, Expression
                          @JsonProperty("@type") Id type,
                          @JsonProperty("@language") String language)
         {
-            super(value);
+            this.value = checkValue(value);
             this.type = type;
             this.language = language;
         }
@@ -192,7 +508,7 @@ public abstract class Literal implements Value, Expression
         @JsonProperty("@value")
         public Object value()
         {
-            return super.value();
+            return value;
         }
 
         @Override
@@ -201,6 +517,12 @@ public abstract class Literal implements Value, Expression
             visitor.visit(this);
         }
 
+        @Override
+        public <T> T apply(Transform<T> transform)
+        {
+            return transform.map(this);
+        }
+
         @JsonProperty("@type")
         @JsonInclude(NON_NULL)
         @SuppressWarnings("unused")
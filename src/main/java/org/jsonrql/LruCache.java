@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache, evicting in least-recently-used order. The cache is striped by the hash of
+ * the key, so the bound is applied per stripe.
+ */
+public final class LruCache<K, V>
+{
+    private static final int STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int maximumSize)
+    {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("Cache size cannot be negative");
+
+        this.stripes = (Stripe<K, V>[])new Stripe<?, ?>[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe<>(maximumSize / STRIPES + (i < maximumSize % STRIPES ? 1 : 0));
+    }
+
+    /**
+     * @return the cached value, or <code>null</code> if none
+     */
+    public V get(K key)
+    {
+        return stripe(key).get(key);
+    }
+
+    /**
+     * Computes the value outside of any lock, so concurrent misses on the same key may compute it twice.
+     * Only one of the values is cached and returned to both callers.
+     *
+     * @return the cached value, or else the computed value, now cached
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute)
+    {
+        final Stripe<K, V> stripe = stripe(key);
+        final V value = stripe.get(key);
+        return value != null ? value : stripe.cache(key, compute.apply(key));
+    }
+
+    /**
+     * @return the value already cached for the key, or else the given value, now cached
+     */
+    public V cache(K key, V value)
+    {
+        return stripe(key).cache(key, value);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    private Stripe<K, V> stripe(K key)
+    {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static final class Stripe<K, V>
+    {
+        private final int maximumSize;
+        private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+                return size() > maximumSize;
+            }
+        };
+
+        Stripe(int maximumSize)
+        {
+            this.maximumSize = maximumSize;
+        }
+
+        synchronized V get(K key)
+        {
+            return entries.get(key);
+        }
+
+        /**
+         * @return the value already cached for the key, or else the given value, now cached
+         */
+        synchronized V cache(K key, V value)
+        {
+            final V previous = entries.get(key);
+            if (previous != null)
+                return previous;
+            if (maximumSize > 0)
+                entries.put(key, value);
+            return value;
+        }
+
+        synchronized int size()
+        {
+            return entries.size();
+        }
+    }
+}
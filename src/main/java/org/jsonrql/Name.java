@@ -9,22 +9,40 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * An IRI, compact IRI or term.
+ * <p>
+ * Names are interned in a process-wide pool while they are reachable, so that equal names are usually
+ * identical. Interning can be disabled with the system property <code>org.jsonrql.Name.intern=false</code>.
+ */
 @JsonSerialize
 public final class Name implements Id
 {
+    private static final boolean INTERN =
+        Boolean.parseBoolean(System.getProperty("org.jsonrql.Name.intern", "true"));
+    private static final ConcurrentMap<String, NameRef> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Name> COLLECTED = new ReferenceQueue<>();
+
     private final String name;
+    private final int hash;
 
+    @JsonCreator
     public static Name name(String name)
     {
-        return new Name(name);
+        return INTERN && name != null ? intern(name) : new Name(name);
     }
 
-    @JsonCreator
     private Name(String name)
     {
         this.name = name;
+        this.hash = Objects.hash(name);
     }
 
     @Override
@@ -33,6 +51,12 @@ public final class Name implements Id
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     @Override
     @JsonValue
     public String toString()
@@ -43,12 +67,46 @@ public final class Name implements Id
     @Override
     public boolean equals(Object o)
     {
-        return this == o || o instanceof Name && Objects.equals(name, ((Name) o).name);
+        return this == o || o instanceof Name && hash == ((Name) o).hash && Objects.equals(name, ((Name) o).name);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(name);
+        return hash;
+    }
+
+    private static Name intern(String iri)
+    {
+        expungeCollected();
+        while (true)
+        {
+            final NameRef ref = POOL.get(iri);
+            Name name = ref == null ? null : ref.get();
+            if (name != null)
+                return name;
+
+            name = new Name(iri);
+            final NameRef newRef = new NameRef(name);
+            if (ref == null ? POOL.putIfAbsent(iri, newRef) == null : POOL.replace(iri, ref, newRef))
+                return name;
+        }
+    }
+
+    private static void expungeCollected()
+    {
+        for (Reference<? extends Name> ref; (ref = COLLECTED.poll()) != null; )
+            POOL.remove(((NameRef)ref).iri, ref);
+    }
+
+    private static final class NameRef extends WeakReference<Name>
+    {
+        final String iri;
+
+        NameRef(Name name)
+        {
+            super(name, COLLECTED);
+            this.iri = name.name;
+        }
     }
 }
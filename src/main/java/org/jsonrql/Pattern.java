@@ -10,7 +10,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
-import com.github.jsonldjava.utils.JsonUtils;
 
 import java.io.IOException;
 
@@ -49,7 +48,7 @@ public abstract class Pattern implements Jrql
     {
         try
         {
-            return JsonUtils.toPrettyString(this);
+            return JsonRqlModule.prettyWriter().writeValueAsString(this);
         }
         catch (IOException e)
         {
@@ -65,11 +64,30 @@ public abstract class Pattern implements Jrql
             switch (p.getCurrentToken())
             {
                 case START_OBJECT:
-                    // Unfortunately we need to read ahead to decide on the target type
-                    return readAhead(p, ctxt, node ->
-                        fieldsOf(node).anyMatch(KEYWORDS.clauses::containsKey) ? Query.decideType(node)
-                            : fieldsOf(node).anyMatch(KEYWORDS.groupPatterns::containsKey) ? Group.class
-                            : Subject.class);
+                    // Unfortunately we may need to read ahead to decide on the target type
+                    return readDeciding(p, ctxt, new TypeDecision<Pattern>()
+                    {
+                        boolean clause, groupPattern;
+
+                        @Override public Class<? extends Pattern> decide(String field)
+                        {
+                            final Class<? extends Query<?>> queryType = Query.decideType(field);
+                            if (queryType != null)
+                                return queryType;
+
+                            clause |= KEYWORDS.clauses.containsKey(field);
+                            groupPattern |= KEYWORDS.groupPatterns.containsKey(field);
+                            // Only subjects have non-keyword fields, but a group pattern keyword makes a group
+                            return clause || groupPattern || isKeyword(field) ? null : Subject.class;
+                        }
+
+                        @Override public Class<? extends Pattern> decide()
+                        {
+                            if (clause)
+                                throw Query.undecidedType();
+                            return groupPattern ? Group.class : Subject.class;
+                        }
+                    });
 
                 case START_ARRAY:
                     // Create a group
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.*;
+
+/**
+ * An immutable hash array mapped trie. {@link #plus} and {@link #minus} copy only the path to the changed
+ * entry, sharing the rest of the trie with the original map, so each is O(log<sub>32</sub> n).
+ * <p>
+ * The {@link Map#hashCode() content hash} is maintained incrementally, so it is constant time.
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V>
+{
+    private static final int BITS = 5, MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0, 0);
+
+    private final Node root;
+    private final int size;
+    private final int hash;
+    private Set<Entry<K, V>> entrySet;
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty()
+    {
+        return (PersistentMap<K, V>)EMPTY;
+    }
+
+    private PersistentMap(Node root, int size, int hash)
+    {
+        this.root = root;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    @Override public V get(Object key)
+    {
+        final Leaf<K, V> leaf = find(key);
+        return leaf == null ? null : leaf.getValue();
+    }
+
+    @Override public boolean containsKey(Object key)
+    {
+        return find(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<K, V> find(Object key)
+    {
+        return root == null ? null : (Leaf<K, V>)root.find(spread(key), key, 0);
+    }
+
+    PersistentMap<K, V> plus(K key, V value)
+    {
+        final Leaf<K, V> leaf = new Leaf<>(spread(key), key, value);
+        if (root == null)
+            return new PersistentMap<>(Bitmap.of(leaf), 1, leaf.hashCode());
+
+        final Leaf<?, ?>[] replaced = new Leaf<?, ?>[1];
+        final Node newRoot = root.put(leaf, 0, replaced);
+        if (newRoot == root)
+            return this;
+        else if (replaced[0] == null)
+            return new PersistentMap<>(newRoot, size + 1, hash + leaf.hashCode());
+        else
+            return new PersistentMap<>(newRoot, size, hash - replaced[0].hashCode() + leaf.hashCode());
+    }
+
+    PersistentMap<K, V> minus(Object key)
+    {
+        if (root == null)
+            return this;
+
+        final Leaf<?, ?>[] removed = new Leaf<?, ?>[1];
+        final Node newRoot = root.remove(spread(key), key, 0, removed);
+        if (newRoot == root)
+            return this;
+        else if (newRoot == null)
+            return empty();
+        else
+            return new PersistentMap<>(newRoot, size - 1, hash - removed[0].hashCode());
+    }
+
+    @Override public int size()
+    {
+        return size;
+    }
+
+    @Override public Set<Entry<K, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Entry<K, V>>()
+            {
+                @Override public Iterator<Entry<K, V>> iterator()
+                {
+                    return new EntryIterator();
+                }
+
+                @Override public int size()
+                {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        else if (o instanceof PersistentMap)
+            return size == ((PersistentMap<?, ?>)o).size && hash == ((PersistentMap<?, ?>)o).hash &&
+                (root == ((PersistentMap<?, ?>)o).root || super.equals(o));
+        else
+            return super.equals(o);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    private static int spread(Object key)
+    {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int hash;
+
+        Leaf(int hash, K key, V value)
+        {
+            super(key, value);
+            this.hash = hash;
+        }
+
+        boolean matches(int hash, Object key)
+        {
+            return this.hash == hash && getKey().equals(key);
+        }
+    }
+
+    private static abstract class Node
+    {
+        /**
+         * Each slot is either a {@link Leaf} or a sub-{@link Node}
+         */
+        final Object[] slots;
+
+        Node(Object... slots)
+        {
+            this.slots = slots;
+        }
+
+        abstract Leaf<?, ?> find(int hash, Object key, int shift);
+
+        /**
+         * @return the new node, or this node if the leaf is already present
+         */
+        abstract Node put(Leaf<?, ?> leaf, int shift, Leaf<?, ?>[] replaced);
+
+        /**
+         * @return the new node, this node if the key is not present, or <code>null</code> if the node is now
+         * empty
+         */
+        abstract Node remove(int hash, Object key, int shift, Leaf<?, ?>[] removed);
+    }
+
+    private static final class Bitmap extends Node
+    {
+        final int bitmap;
+
+        Bitmap(int bitmap, Object... slots)
+        {
+            super(slots);
+            this.bitmap = bitmap;
+        }
+
+        static Bitmap of(Leaf<?, ?> leaf)
+        {
+            return new Bitmap(bit(leaf.hash, 0), leaf);
+        }
+
+        @Override Leaf<?, ?> find(int hash, Object key, int shift)
+        {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return null;
+
+            final Object slot = slots[index(bit)];
+            if (slot instanceof Leaf)
+                return ((Leaf<?, ?>)slot).matches(hash, key) ? (Leaf<?, ?>)slot : null;
+            else
+                return ((Node)slot).find(hash, key, shift + BITS);
+        }
+
+        @Override Node put(Leaf<?, ?> leaf, int shift, Leaf<?, ?>[] replaced)
+        {
+            final int bit = bit(leaf.hash, shift), index = index(bit);
+            if ((bitmap & bit) == 0)
+            {
+                final Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = leaf;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new Bitmap(bitmap | bit, newSlots);
+            }
+            final Object slot = slots[index];
+            if (slot instanceof Leaf)
+            {
+                final Leaf<?, ?> existing = (Leaf<?, ?>)slot;
+                if (existing.matches(leaf.hash, leaf.getKey()))
+                {
+                    if (Objects.equals(existing.getValue(), leaf.getValue()))
+                        return this;
+                    replaced[0] = existing;
+                    return with(index, leaf);
+                }
+                return with(index, pair(existing, existing.hash, leaf, shift + BITS));
+            }
+            final Node newNode = ((Node)slot).put(leaf, shift + BITS, replaced);
+            return newNode == slot ? this : with(index, newNode);
+        }
+
+        @Override Node remove(int hash, Object key, int shift, Leaf<?, ?>[] removed)
+        {
+            final int bit = bit(hash, shift), index = index(bit);
+            if ((bitmap & bit) == 0)
+                return this;
+
+            final Object slot = slots[index];
+            final Node newNode;
+            if (slot instanceof Leaf)
+            {
+                if (!((Leaf<?, ?>)slot).matches(hash, key))
+                    return this;
+                removed[0] = (Leaf<?, ?>)slot;
+                newNode = null;
+            }
+            else
+            {
+                newNode = ((Node)slot).remove(hash, key, shift + BITS, removed);
+                if (newNode == slot)
+                    return this;
+            }
+            if (newNode != null)
+                return with(index, newNode);
+            if (slots.length == 1)
+                return null;
+
+            final Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+            return new Bitmap(bitmap & ~bit, newSlots);
+        }
+
+        private Bitmap with(int index, Object slot)
+        {
+            final Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new Bitmap(bitmap, newSlots);
+        }
+
+        private int index(int bit)
+        {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int shift)
+        {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+    }
+
+    /**
+     * Leaves whose keys have the same hash
+     */
+    private static final class Collision extends Node
+    {
+        final int hash;
+
+        Collision(int hash, Object... leaves)
+        {
+            super(leaves);
+            this.hash = hash;
+        }
+
+        @Override Leaf<?, ?> find(int hash, Object key, int shift)
+        {
+            final int index = indexOf(hash, key);
+            return index < 0 ? null : (Leaf<?, ?>)slots[index];
+        }
+
+        @Override Node put(Leaf<?, ?> leaf, int shift, Leaf<?, ?>[] replaced)
+        {
+            if (leaf.hash != hash)
+                return pair(this, hash, leaf, shift);
+
+            final int index = indexOf(leaf.hash, leaf.getKey());
+            if (index < 0)
+            {
+                final Object[] newSlots = Arrays.copyOf(slots, slots.length + 1);
+                newSlots[slots.length] = leaf;
+                return new Collision(hash, newSlots);
+            }
+            final Leaf<?, ?> existing = (Leaf<?, ?>)slots[index];
+            if (Objects.equals(existing.getValue(), leaf.getValue()))
+                return this;
+
+            replaced[0] = existing;
+            final Object[] newSlots = slots.clone();
+            newSlots[index] = leaf;
+            return new Collision(hash, newSlots);
+        }
+
+        @Override Node remove(int hash, Object key, int shift, Leaf<?, ?>[] removed)
+        {
+            final int index = indexOf(hash, key);
+            if (index < 0)
+                return this;
+
+            removed[0] = (Leaf<?, ?>)slots[index];
+            if (slots.length == 1)
+                return null;
+
+            final Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+            return new Collision(hash, newSlots);
+        }
+
+        private int indexOf(int hash, Object key)
+        {
+            if (hash == this.hash)
+                for (int i = 0; i < slots.length; i++)
+                    if (((Leaf<?, ?>)slots[i]).matches(hash, key))
+                        return i;
+            return -1;
+        }
+    }
+
+    /**
+     * Creates the smallest sub-trie containing a leaf and another leaf or collision with a different key
+     */
+    private static Node pair(Object a, int hashA, Leaf<?, ?> b, int shift)
+    {
+        if (hashA == b.hash)
+            return new Collision(hashA, a, b);
+
+        final int bitA = Bitmap.bit(hashA, shift), bitB = Bitmap.bit(b.hash, shift);
+        if (bitA == bitB)
+            return new Bitmap(bitA, pair(a, hashA, b, shift + BITS));
+        else
+            return new Bitmap(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[]{a, b} :
+                new Object[]{b, a});
+    }
+
+    /**
+     * Depth-first over the trie, which is at most seven bitmap levels and a collision deep
+     */
+    private final class EntryIterator implements Iterator<Entry<K, V>>
+    {
+        private final Object[][] stack = new Object[8][];
+        private final int[] indices = new int[8];
+        private int depth = -1;
+        private Leaf<K, V> next;
+
+        EntryIterator()
+        {
+            if (root != null)
+                push(root);
+            advance();
+        }
+
+        @Override public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override public Entry<K, V> next()
+        {
+            if (next == null)
+                throw new NoSuchElementException();
+
+            final Leaf<K, V> current = next;
+            advance();
+            return current;
+        }
+
+        private void push(Node node)
+        {
+            stack[++depth] = node.slots;
+            indices[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance()
+        {
+            next = null;
+            while (depth >= 0)
+            {
+                if (indices[depth] < stack[depth].length)
+                {
+                    final Object slot = stack[depth][indices[depth]++];
+                    if (slot instanceof Leaf)
+                    {
+                        next = (Leaf<K, V>)slot;
+                        return;
+                    }
+                    push((Node)slot);
+                }
+                else
+                {
+                    depth--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Compact storage for the properties of a {@link Subject}, which mostly have only a few. Up to
+ * {@link #MAX_INLINE} properties are held in a single array of alternating keys and values, and more in a
+ * hash map. A property with a single value holds the value itself, rather than a list. Properties iterate in
+ * the order they were first set.
+ * <p>
+ * Presents an unmodifiable map view. Only the owning subject mutates it, during construction.
+ */
+final class PropertyMap extends AbstractMap<Id, List<Value>>
+{
+    static final int MAX_INLINE = 8;
+    private static final Object[] EMPTY = {};
+
+    /**
+     * Alternating keys and values, where each value is a {@link Value} or an unmodifiable list of them
+     */
+    private Object[] inline;
+    private int size;
+    private Map<Id, Object> hashed;
+    private Set<Entry<Id, List<Value>>> entrySet;
+
+    PropertyMap()
+    {
+        this.inline = EMPTY;
+    }
+
+    PropertyMap(Map<Id, List<Value>> properties)
+    {
+        this.inline = new Object[Math.min(properties.size(), MAX_INLINE) * 2];
+        properties.forEach(this::set);
+    }
+
+    PropertyMap(PropertyMap properties)
+    {
+        this.inline = properties.inline == null ? null : properties.inline.clone();
+        this.size = properties.size;
+        this.hashed = properties.hashed == null ? null : new LinkedHashMap<>(properties.hashed);
+    }
+
+    void set(Id key, List<Value> values)
+    {
+        final Object stored = values.size() == 1 ? values.get(0) :
+            values.isEmpty() ? emptyList() : unmodifiableList(new ArrayList<>(values));
+        if (hashed != null)
+        {
+            hashed.put(key, stored);
+            return;
+        }
+        final int index = indexOf(key);
+        if (index >= 0)
+        {
+            inline[index + 1] = stored;
+        }
+        else if (size < MAX_INLINE)
+        {
+            if (inline.length == size * 2)
+                inline = Arrays.copyOf(inline, Math.max(2, size * 4));
+            inline[size * 2] = key;
+            inline[size * 2 + 1] = stored;
+            size++;
+        }
+        else
+        {
+            hashed = new LinkedHashMap<>();
+            for (int i = 0; i < size * 2; i += 2)
+                hashed.put((Id)inline[i], inline[i + 1]);
+            hashed.put(key, stored);
+            inline = null;
+        }
+    }
+
+    @Override public List<Value> get(Object key)
+    {
+        return asList(stored(key));
+    }
+
+    @Override public boolean containsKey(Object key)
+    {
+        return stored(key) != null;
+    }
+
+    @Override public int size()
+    {
+        return hashed != null ? hashed.size() : size;
+    }
+
+    /**
+     * Streams all values without materialising lists for single values
+     */
+    void forEachValue(Consumer<Value> action)
+    {
+        if (hashed != null)
+            hashed.values().forEach(stored -> forEach(stored, action));
+        else
+            for (int i = 1; i < size * 2; i += 2)
+                forEach(inline[i], action);
+    }
+
+    @Override public Set<Entry<Id, List<Value>>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet<Entry<Id, List<Value>>>()
+            {
+                @Override public Iterator<Entry<Id, List<Value>>> iterator()
+                {
+                    if (hashed != null)
+                    {
+                        final Iterator<Entry<Id, Object>> entries = hashed.entrySet().iterator();
+                        return new Iterator<Entry<Id, List<Value>>>()
+                        {
+                            @Override public boolean hasNext()
+                            {
+                                return entries.hasNext();
+                            }
+
+                            @Override public Entry<Id, List<Value>> next()
+                            {
+                                final Entry<Id, Object> entry = entries.next();
+                                return new SimpleImmutableEntry<>(entry.getKey(), asList(entry.getValue()));
+                            }
+                        };
+                    }
+                    return new Iterator<Entry<Id, List<Value>>>()
+                    {
+                        int index = 0;
+
+                        @Override public boolean hasNext()
+                        {
+                            return index < size * 2;
+                        }
+
+                        @Override public Entry<Id, List<Value>> next()
+                        {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            final Entry<Id, List<Value>> entry =
+                                new SimpleImmutableEntry<>((Id)inline[index], asList(inline[index + 1]));
+                            index += 2;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override public int size()
+                {
+                    return PropertyMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        else if (!(o instanceof PropertyMap))
+            return super.equals(o);
+
+        final PropertyMap that = (PropertyMap)o;
+        if (size() != that.size())
+            return false;
+        if (hashed != null)
+            return hashed.equals(that.hashed);
+        for (int i = 0; i < size * 2; i += 2)
+        {
+            if (!inline[i + 1].equals(that.stored(inline[i])))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        if (hashed != null)
+            for (Entry<Id, Object> entry : hashed.entrySet())
+                hash += entry.getKey().hashCode() ^ asList(entry.getValue()).hashCode();
+        else
+            for (int i = 0; i < size * 2; i += 2)
+                hash += inline[i].hashCode() ^ listHashCode(inline[i + 1]);
+        return hash;
+    }
+
+    private Object stored(Object key)
+    {
+        if (hashed != null)
+            return hashed.get(key);
+
+        final int index = indexOf(key);
+        return index < 0 ? null : inline[index + 1];
+    }
+
+    private int indexOf(Object key)
+    {
+        // Ids are mostly interned, so check identity before equality
+        for (int i = 0; i < size * 2; i += 2)
+            if (inline[i] == key)
+                return i;
+        for (int i = 0; i < size * 2; i += 2)
+            if (inline[i].equals(key))
+                return i;
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Value> asList(Object stored)
+    {
+        return stored == null ? null : stored instanceof List ? (List<Value>)stored : singletonList((Value)stored);
+    }
+
+    /**
+     * As for {@link List#hashCode()}, without materialising a list for a single value
+     */
+    private static int listHashCode(Object stored)
+    {
+        return stored instanceof List ? stored.hashCode() : 31 + stored.hashCode();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void forEach(Object stored, Consumer<Value> action)
+    {
+        if (stored instanceof List)
+            ((List<Value>)stored).forEach(action);
+        else
+            action.accept((Value)stored);
+    }
+}
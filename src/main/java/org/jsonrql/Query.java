@@ -7,16 +7,16 @@ package org.jsonrql;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableList;
 
-public abstract class Query<T extends Query> extends Pattern
+public abstract class Query<T extends Query<T>> extends Pattern
 {
     protected final List<Pattern> where;
 
@@ -52,20 +52,47 @@ public abstract class Query<T extends Query> extends Pattern
 
     protected abstract T copyWith(Context context, List<Pattern> where);
 
-    static Class<? extends Query> decideType(JsonNode node)
+    /**
+     * @return the type of query identified by the given clause, or <code>null</code> if the clause does not
+     * identify a type of query
+     */
+    static Class<? extends Query<?>> decideType(String clause)
     {
-        if (node.has("@select"))
-            return Select.class;
-        else if (node.has("@distinct"))
-            return Distinct.class;
-        else if (node.has("@describe"))
-            return Describe.class;
-        else if (node.has("@construct"))
-            return Construct.class;
-        else if (node.has("@insert") || node.has("@delete"))
-            return Update.class;
-        else
-            throw new IllegalArgumentException(
-                "Expected one of [@select, @distinct, @describe, @construct, @insert, @delete]");
+        switch (clause)
+        {
+            case "@select":
+                return Select.class;
+            case "@distinct":
+                return Distinct.class;
+            case "@describe":
+                return Describe.class;
+            case "@construct":
+                return Construct.class;
+            case "@insert":
+            case "@delete":
+                return Update.class;
+            default:
+                return null;
+        }
+    }
+
+    static IllegalArgumentException undecidedType()
+    {
+        return new IllegalArgumentException(
+            "Expected one of [@select, @distinct, @describe, @construct, @insert, @delete]");
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o != null && getClass() == o.getClass() &&
+            Objects.equals(context, ((Query<?>)o).context) &&
+            Objects.equals(where, ((Query<?>)o).where);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(context, where);
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.fasterxml.jackson.core.JsonToken.NOT_AVAILABLE;
+
+/**
+ * Parses a <b>json-rql</b> query from {@link ByteBuffer} chunks as they arrive, without blocking and without
+ * a contiguous copy of the request body, for use in non-blocking servers.
+ * <p>
+ * Each chunk is tokenised as soon as it is fed, so the caller may re-use a chunk's buffer once
+ * {@link #feed(ByteBuffer)} returns. Tokens are held until the query is complete, and then deserialized as
+ * with {@link JsonRqlModule#queryReader()}. A feeder is for a single query, and is not thread-safe.
+ */
+public final class QueryFeeder
+{
+    private final JsonParser p;
+    private final TokenBuffer tokens;
+    private boolean complete;
+
+    public QueryFeeder() throws IOException
+    {
+        this.p = JsonRqlModule.mapper().getFactory().createNonBlockingByteBufferParser();
+        this.tokens = new TokenBuffer(p);
+    }
+
+    /**
+     * Feeds the next chunk of the request body.
+     *
+     * @return <code>true</code> if the query is now complete, and can be obtained with {@link #end()}
+     * @throws IOException if the input so far is not well-formed JSON
+     */
+    public boolean feed(ByteBuffer chunk) throws IOException
+    {
+        ((ByteBufferFeeder)p.getNonBlockingInputFeeder()).feedInput(chunk);
+        return drain();
+    }
+
+    /**
+     * Signals the end of the request body, and returns the parsed query.
+     *
+     * @throws IOException if the body is not a single well-formed json-rql query
+     */
+    public Query<?> end() throws IOException
+    {
+        p.getNonBlockingInputFeeder().endOfInput();
+        if (!drain())
+            throw new JsonMappingException(p, "Unexpected end of query");
+
+        try (JsonParser buffered = tokens.asParser(p.getCodec()))
+        {
+            return JsonRqlModule.queryReader().readValue(buffered);
+        }
+        finally
+        {
+            p.close();
+        }
+    }
+
+    private boolean drain() throws IOException
+    {
+        for (JsonToken token = p.nextToken(); token != NOT_AVAILABLE && token != null; token = p.nextToken())
+        {
+            if (complete)
+                throw new JsonMappingException(p, "Unexpected content after query");
+
+            tokens.copyCurrentEvent(p);
+            complete = p.getParsingContext().inRoot();
+        }
+        return complete;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.fasterxml.jackson.core.JsonToken.*;
+import static java.util.Collections.unmodifiableSet;
+import static org.jsonrql.Jrql.Deserializer.badToken;
+import static org.jsonrql.Jrql.Deserializer.isKeyword;
+
+/**
+ * A lazy view of a <b>json-rql</b> query in JSON bytes, for deciding how to handle a query without
+ * deserializing all of it, for example to route it to a backend.
+ * <p>
+ * Only the top-level structure of the query is indexed when the view is created, which also checks that the
+ * bytes are well-formed JSON. The <code>@context</code>, each pattern of the <code>@where</code> clause, and
+ * the whole query are each deserialized only when first accessed, and a failure to deserialize them is
+ * thrown as an {@link IllegalArgumentException}.
+ * <p>
+ * The view does not copy the bytes, so they must not change while it is in use. A view is not thread-safe.
+ */
+public final class QueryView
+{
+    private static final String[] SUBJECT_CLAUSES = {"@where", "@insert", "@delete", "@construct"};
+
+    private final byte[] json;
+    private final int offset, length;
+    private final Class<? extends Query<?>> type;
+    private final Map<String, Span> clauses = new LinkedHashMap<>();
+    private Context context;
+    private List<Pattern> where;
+    private Set<String> predicates;
+    private Query<?> query;
+
+    public QueryView(byte[] json) throws IOException
+    {
+        this(json, 0, json.length);
+    }
+
+    /**
+     * @throws IOException if the bytes are not a well-formed JSON object with a json-rql query clause
+     */
+    public QueryView(byte[] json, int offset, int length) throws IOException
+    {
+        this.json = json;
+        this.offset = offset;
+        this.length = length;
+
+        try (JsonParser p = parser(offset, length))
+        {
+            if (p.nextToken() != START_OBJECT)
+                throw badToken(p, START_OBJECT);
+
+            Class<? extends Query<?>> type = null;
+            for (JsonToken token = p.nextToken(); token == FIELD_NAME; token = p.nextToken())
+            {
+                final String clause = p.getCurrentName();
+                if (type == null)
+                    type = Query.decideType(clause);
+                p.nextToken();
+                clauses.put(clause, span(p, offset));
+            }
+            if (type == null)
+                throw new JsonMappingException(p, Query.undecidedType().getMessage());
+            if (p.nextToken() != null)
+                throw new JsonMappingException(p, "Unexpected content after query");
+            this.type = type;
+        }
+    }
+
+    /**
+     * @return the type of the query, as decided by its first query clause
+     */
+    public Class<? extends Query<?>> type()
+    {
+        return type;
+    }
+
+    /**
+     * @return the top-level keys of the query, in order
+     */
+    public Set<String> clauses()
+    {
+        return unmodifiableSet(clauses.keySet());
+    }
+
+    public Context context()
+    {
+        if (context == null)
+        {
+            final Span span = clauses.get("@context");
+            context = span == null ? Context.context() : read(span, JsonRqlModule.mapper().readerFor(Context.class));
+        }
+        return context;
+    }
+
+    /**
+     * @return the patterns of the <code>@where</code> clause, each deserialized on first access
+     */
+    public List<Pattern> where()
+    {
+        if (where == null)
+        {
+            final List<Span> spans = new ArrayList<>();
+            final Span span = clauses.get("@where");
+            if (span != null)
+                elements(span, spans::add);
+
+            final Pattern[] patterns = new Pattern[spans.size()];
+            where = new AbstractList<Pattern>()
+            {
+                @Override public Pattern get(int index)
+                {
+                    if (patterns[index] == null)
+                        patterns[index] = read(spans.get(index), JsonRqlModule.patternReader());
+                    return patterns[index];
+                }
+
+                @Override public int size()
+                {
+                    return patterns.length;
+                }
+            };
+        }
+        return where;
+    }
+
+    /**
+     * @return the property keys, as written, of the top-level subjects of the <code>@where</code>,
+     * <code>@insert</code>, <code>@delete</code> and <code>@construct</code> clauses, found without
+     * deserializing the subjects
+     */
+    public Set<String> predicates()
+    {
+        if (predicates == null)
+        {
+            final Set<String> keys = new LinkedHashSet<>();
+            for (String clause : SUBJECT_CLAUSES)
+            {
+                final Span span = clauses.get(clause);
+                if (span != null)
+                    elements(span, element -> {
+                        try (JsonParser p = parser(element.start, element.length))
+                        {
+                            if (p.nextToken() == START_OBJECT)
+                            {
+                                for (JsonToken token = p.nextToken(); token == FIELD_NAME; token = p.nextToken())
+                                {
+                                    if (!isKeyword(p.getCurrentName()))
+                                        keys.add(p.getCurrentName());
+                                    p.nextToken();
+                                    p.skipChildren();
+                                }
+                            }
+                        }
+                    });
+            }
+            predicates = unmodifiableSet(keys);
+        }
+        return predicates;
+    }
+
+    /**
+     * @return the whole query, deserialized on first access
+     */
+    public Query<?> query()
+    {
+        if (query == null)
+            query = read(new Span(offset, length), JsonRqlModule.queryReader());
+        return query;
+    }
+
+    private JsonParser parser(int offset, int length) throws IOException
+    {
+        return JsonRqlModule.mapper().getFactory().createParser(json, offset, length);
+    }
+
+    /**
+     * Passes the span of each element of an array, or the span itself if it is not an array
+     */
+    private void elements(Span span, SpanConsumer consumer)
+    {
+        try (JsonParser p = parser(span.start, span.length))
+        {
+            if (p.nextToken() == START_ARRAY)
+            {
+                for (JsonToken token = p.nextToken(); token != END_ARRAY; token = p.nextToken())
+                    consumer.accept(span(p, span.start));
+            }
+            else
+            {
+                consumer.accept(span);
+            }
+        }
+        catch (IOException e)
+        {
+            // The bytes have already been parsed once
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private <T> T read(Span span, ObjectReader reader)
+    {
+        try
+        {
+            return reader.readValue(json, span.start, span.length);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the span of the current value of a parser whose input starts at the given index, leaving the
+     * parser at the end of the value
+     */
+    private static Span span(JsonParser p, int base) throws IOException
+    {
+        final int start = (int)p.getTokenLocation().getByteOffset();
+        if (p.currentToken().isStructStart())
+            p.skipChildren();
+        else
+            p.finishToken();
+        return new Span(base + start, (int)p.getCurrentLocation().getByteOffset() - start);
+    }
+
+    private interface SpanConsumer
+    {
+        void accept(Span span) throws IOException;
+    }
+
+    private static final class Span
+    {
+        final int start, length;
+
+        Span(int start, int length)
+        {
+            this.start = start;
+            this.length = length;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED;
@@ -20,7 +21,7 @@ import static java.util.Arrays.stream;
 import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.toList;
 
-public abstract class Read<T extends Read> extends Query<T>
+public abstract class Read<T extends Read<T>> extends Query<T>
 {
     protected final List<Expression> orderBy;
     protected final Integer limit, offset;
@@ -74,6 +75,12 @@ public abstract class Read<T extends Read> extends Query<T>
         visitor.visit(this);
     }
 
+    @Override
+    public <R> R apply(Transform<R> transform)
+    {
+        return transform.map(this);
+    }
+
     protected Read(Context context, List<Pattern> where, List<Expression> orderBy, Integer limit, Integer offset)
     {
         super(context, where);
@@ -114,4 +121,19 @@ public abstract class Read<T extends Read> extends Query<T>
     {
         return offset;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || super.equals(o) &&
+            Objects.equals(orderBy, ((Read<?>)o).orderBy) &&
+            Objects.equals(limit, ((Read<?>)o).limit) &&
+            Objects.equals(offset, ((Read<?>)o).offset);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + Objects.hash(orderBy, limit, offset);
+    }
 }
@@ -26,6 +26,12 @@ public interface Result extends Jrql
             visitor.visit(this);
         }
 
+        @Override
+        public <T> T apply(Transform<T> transform)
+        {
+            return transform.map(this);
+        }
+
         @Override
         @JsonValue
         public String toString()
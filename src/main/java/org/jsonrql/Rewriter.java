@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A rewrite of <b>json-rql</b> patterns and queries, such as an optimisation pass to apply before
+ * translation. Rewriters compose into a pipeline with {@link #then(Rewriter)}, and can be repeated until they
+ * make no further change with {@link #fixpoint(int)}.
+ * <p>
+ * A rewriter returns its input if it makes no change, and returns a query for a query.
+ */
+public interface Rewriter
+{
+    Pattern rewrite(Pattern pattern);
+
+    default Rewriter then(Rewriter next)
+    {
+        return pattern -> next.rewrite(rewrite(pattern));
+    }
+
+    /**
+     * @return a rewriter that repeats this one until it makes no change, which throws
+     * {@link IllegalArgumentException} if there is still a change after the given number of passes
+     */
+    default Rewriter fixpoint(int maxPasses)
+    {
+        return pattern -> {
+            for (int pass = 0; pass < maxPasses; pass++)
+            {
+                final Pattern rewritten = rewrite(pattern);
+                if (rewritten == pattern || rewritten.equals(pattern))
+                    return pattern;
+                pattern = rewritten;
+            }
+            throw new IllegalArgumentException(format("Rewrite did not converge in %d passes", maxPasses));
+        };
+    }
+
+    /**
+     * Rewrites bottom-up. The clauses of each query and group, and the property values of each subject, are
+     * rewritten before the node itself is passed to the corresponding {@code map} hook, which by default
+     * makes no change. Expressions in filters and orderings are passed to {@link #map(Expression)}.
+     * <p>
+     * A node is rebuilt only if one of its children changed, so unchanged sub-trees are retained as they
+     * are. The result for each node is memoised by identity for the duration of one rewrite, so a sub-tree
+     * shared within a pattern, for example by an {@link Interner}, is rewritten only once. Hooks must
+     * therefore depend only on their argument.
+     */
+    abstract class BottomUp implements Rewriter
+    {
+        @Override public Pattern rewrite(Pattern pattern)
+        {
+            return new Walk().pattern(pattern);
+        }
+
+        protected Query<?> map(Query<?> query)
+        {
+            return query;
+        }
+
+        protected Pattern map(Group group)
+        {
+            return group;
+        }
+
+        protected Subject map(Subject subject)
+        {
+            return subject;
+        }
+
+        protected Value map(InlineFilter inlineFilter)
+        {
+            return inlineFilter;
+        }
+
+        protected Expression map(Expression expression)
+        {
+            return expression;
+        }
+
+        private final class Walk
+        {
+            final Map<Jrql, Jrql> memo = new IdentityHashMap<>();
+
+            Pattern pattern(Pattern pattern)
+            {
+                if (pattern instanceof Subject)
+                    return subject((Subject)pattern);
+                else if (pattern instanceof Group)
+                    return memoised((Group)pattern, this::group);
+                else if (pattern instanceof Query)
+                    return memoised((Query<?>)pattern, this::query);
+                else
+                    return pattern;
+            }
+
+            Subject subject(Subject subject)
+            {
+                return memoised(subject, this::properties);
+            }
+
+            Value value(Value value)
+            {
+                if (value instanceof Subject)
+                    return subject((Subject)value);
+                else if (value instanceof InlineFilter)
+                    return memoised((InlineFilter)value, this::filters);
+                else
+                    return value;
+            }
+
+            Expression expression(Expression expression)
+            {
+                return memoised(expression, BottomUp.this::map);
+            }
+
+            private Query<?> query(Query<?> query)
+            {
+                Query<?> rewritten = query;
+                final List<Pattern> where = all(query.where(), this::pattern);
+                if (where != query.where())
+                    rewritten = query.copyWith(query.context, where);
+
+                if (rewritten instanceof Read)
+                {
+                    final List<Expression> orderBy = ((Read<?>)rewritten).orderBy().orElse(null);
+                    final List<Expression> newOrderBy = orderBy == null ? null : all(orderBy, this::expression);
+                    if (newOrderBy != orderBy)
+                        rewritten = ((Read<?>)rewritten).orderBy(newOrderBy);
+                }
+                if (rewritten instanceof Construct)
+                {
+                    final List<Subject> construct = ((Construct)rewritten).construct();
+                    final List<Subject> newConstruct = all(construct, this::subject);
+                    if (newConstruct != construct)
+                        rewritten = ((Construct)rewritten).copyWith(newConstruct);
+                }
+                else if (rewritten instanceof Update)
+                {
+                    final Update update = (Update)rewritten;
+                    final List<Subject> insert = update.insert().orElse(null), delete = update.delete().orElse(null);
+                    final List<Subject> newInsert = insert == null ? null : all(insert, this::subject);
+                    final List<Subject> newDelete = delete == null ? null : all(delete, this::subject);
+                    if (newInsert != insert || newDelete != delete)
+                        rewritten = new Update(update.context, newInsert, newDelete, update.where);
+                }
+                return map(rewritten);
+            }
+
+            private Pattern group(Group group)
+            {
+                final List<Subject> graph = group.graph().orElse(null);
+                final List<Expression> filter = group.filter().orElse(null);
+                final List<Pattern> union = group.union().orElse(null);
+                final List<Subject> newGraph = graph == null ? null : all(graph, this::subject);
+                final List<Expression> newFilter = filter == null ? null : all(filter, this::expression);
+                final List<Pattern> newUnion = union == null ? null : all(union, this::pattern);
+                if (newGraph == graph && newFilter == filter && newUnion == union)
+                    return map(group);
+
+                final Group.Builder builder = Group.builder().context(group.context);
+                if (newGraph != null)
+                    builder.graph(newGraph.toArray(new Subject[0]));
+                if (newFilter != null)
+                    builder.filter(newFilter.toArray(new Expression[0]));
+                if (newUnion != null)
+                    builder.union(newUnion.toArray(new Pattern[0]));
+                return map(builder.build());
+            }
+
+            private Subject properties(Subject subject)
+            {
+                Subject.Builder builder = null;
+                int unchanged = 0;
+                for (Map.Entry<Id, List<Value>> property : subject.properties().entrySet())
+                {
+                    final List<Value> values = all(property.getValue(), this::value);
+                    if (builder == null && values != property.getValue())
+                        builder = builder(subject, unchanged);
+                    if (builder != null)
+                        builder.with(property.getKey(), values.toArray(new Value[0]));
+                    else
+                        unchanged++;
+                }
+                return map(builder == null ? subject : builder.build());
+            }
+
+            /**
+             * @return a builder for a copy of the given subject, with only its first properties
+             */
+            private Subject.Builder builder(Subject subject, int properties)
+            {
+                final Subject.Builder builder = Subject.builder()
+                    .context(subject.context)
+                    .id(subject.id().orElse(null))
+                    .type(subject.type().orElse(null));
+                final Iterator<Map.Entry<Id, List<Value>>> entries = subject.properties().entrySet().iterator();
+                for (int i = 0; i < properties; i++)
+                {
+                    final Map.Entry<Id, List<Value>> property = entries.next();
+                    builder.with(property.getKey(), property.getValue().toArray(new Value[0]));
+                }
+                return builder;
+            }
+
+            private Value filters(InlineFilter inlineFilter)
+            {
+                Map<String, List<Expression>> filters = null;
+                for (Map.Entry<String, List<Expression>> filter : inlineFilter.filters().entrySet())
+                {
+                    final List<Expression> arguments = all(filter.getValue(), this::expression);
+                    if (filters == null && arguments != filter.getValue())
+                        filters = new HashMap<>(inlineFilter.filters());
+                    if (filters != null)
+                        filters.put(filter.getKey(), unmodifiableList(arguments));
+                }
+                return map(filters == null ? inlineFilter : new InlineFilter(inlineFilter.variable(), filters));
+            }
+
+            /**
+             * @return the given list if no element changed, otherwise a new list
+             */
+            private <T> List<T> all(List<T> nodes, Function<? super T, ? extends T> rewrite)
+            {
+                List<T> rewritten = null;
+                for (int i = 0; i < nodes.size(); i++)
+                {
+                    final T node = nodes.get(i), newNode = rewrite.apply(node);
+                    if (rewritten == null && newNode != node)
+                        rewritten = new ArrayList<>(nodes.subList(0, i));
+                    if (rewritten != null)
+                        rewritten.add(newNode);
+                }
+                return rewritten == null ? nodes : rewritten;
+            }
+
+            @SuppressWarnings("unchecked")
+            private <T extends Jrql, R extends Jrql> R memoised(T node, Function<? super T, ? extends R> rewrite)
+            {
+                final Jrql done = memo.get(node);
+                if (done != null)
+                    return (R)done;
+
+                final R rewritten = rewrite.apply(node);
+                memo.put(node, rewritten);
+                return rewritten;
+            }
+        }
+    }
+}
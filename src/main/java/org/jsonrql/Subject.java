@@ -24,7 +24,8 @@ public final class Subject extends Pattern implements Value
 {
     private final Id id;
     private final Id type;
-    private final Map<Id, List<Value>> properties;
+    private final PropertyMap properties;
+    private int hash;
 
     public static Subject subject(Id id)
     {
@@ -36,6 +37,91 @@ public final class Subject extends Pattern implements Value
         return subject(Id.id(id));
     }
 
+    /**
+     * Accumulates the properties of a subject mutably, for subjects with many properties. Unlike
+     * {@link #with(Id, Value...)}, each call is amortised constant time.
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public static Builder builder(Id id)
+    {
+        return builder().id(id);
+    }
+
+    public static Builder builder(String id)
+    {
+        return builder(Id.id(id));
+    }
+
+    public static final class Builder
+    {
+        private Context context;
+        private Id id, type;
+        private final Map<Id, List<Value>> properties = new LinkedHashMap<>();
+
+        private Builder()
+        {
+        }
+
+        public Builder context(Context context)
+        {
+            this.context = context;
+            return this;
+        }
+
+        public Builder id(Id id)
+        {
+            this.id = id;
+            return this;
+        }
+
+        public Builder type(Id type)
+        {
+            this.type = type;
+            return this;
+        }
+
+        public Builder type(String type)
+        {
+            return type(Id.id(type));
+        }
+
+        public Builder with(String key, String... values)
+        {
+            final List<Value> list = values(Id.id(key));
+            for (String value : values)
+                list.add(Value.value(value));
+            return this;
+        }
+
+        public Builder with(String key, Value... values)
+        {
+            return with(Id.id(key), values);
+        }
+
+        public Builder with(Id key, Value... values)
+        {
+            Collections.addAll(values(key), values);
+            return this;
+        }
+
+        private List<Value> values(Id key)
+        {
+            return properties.computeIfAbsent(key, k -> new ArrayList<>());
+        }
+
+        /**
+         * The builder can continue to be used after building, without affecting the built subject.
+         */
+        public Subject build()
+        {
+            return new Subject(context, id, type, new PropertyMap(properties));
+        }
+    }
+
     @Override public Subject context(Context context)
     {
         return new Subject(context, id, type, properties);
@@ -47,6 +133,12 @@ public final class Subject extends Pattern implements Value
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     public Optional<Id> id()
     {
         return Optional.ofNullable(id);
@@ -89,7 +181,9 @@ public final class Subject extends Pattern implements Value
 
     public Stream<Value> values()
     {
-        return properties.values().stream().flatMap(List::stream);
+        final Stream.Builder<Value> values = Stream.builder();
+        properties.forEachValue(values);
+        return values.build();
     }
 
     public Optional<List<Value>> get(String key)
@@ -122,22 +216,25 @@ public final class Subject extends Pattern implements Value
                     @JsonProperty("@id") Id id,
                     @JsonProperty("@type") Id type)
     {
-        this(context, id, type, emptyMap());
+        this(context, id, type, new PropertyMap());
     }
 
     private Subject(Subject pobj, Id newId, Stream<Value> newValues)
     {
-        this(pobj.context, pobj.id, pobj.type, pobj.properties);
-        properties.computeIfPresent(newId, (id, values) -> valuesList(concat(values.stream(), newValues)));
-        properties.computeIfAbsent(newId, id -> valuesList(newValues));
+        this(pobj.context, pobj.id, pobj.type, new PropertyMap(pobj.properties));
+        final List<Value> values = properties.get(newId);
+        properties.set(newId, (values == null ? newValues : concat(values.stream(), newValues)).collect(toList()));
     }
 
-    private Subject(Context context, Id id, Id type, Map<Id, List<Value>> properties)
+    /**
+     * The properties map is not copied, and is only mutated by deserialization
+     */
+    private Subject(Context context, Id id, Id type, PropertyMap properties)
     {
         super(context);
         this.id = id;
         this.type = type;
-        this.properties = new HashMap<>(properties);
+        this.properties = properties;
     }
 
     @JsonProperty("@id")
@@ -161,7 +258,7 @@ public final class Subject extends Pattern implements Value
     @SuppressWarnings("unused")
     public Map<Id, List<Value>> properties()
     {
-        return unmodifiableMap(properties);
+        return properties;
     }
 
     @JsonAnySetter
@@ -169,18 +266,14 @@ public final class Subject extends Pattern implements Value
     @SuppressWarnings("unused")
     private void setProperty(String key, List<Value> expr)
     {
-        properties.put(Id.id(key), unmodifiableList(expr));
-    }
-
-    private static List<Value> valuesList(Stream<Value> newValues)
-    {
-        return unmodifiableList(newValues.collect(toList()));
+        properties.set(Id.id(key), expr);
     }
 
     @Override
     public boolean equals(Object o)
     {
         return this == o || o instanceof Subject &&
+            hashCode() == o.hashCode() &&
             Objects.equals(id, ((Subject)o).id) &&
             Objects.equals(type, ((Subject)o).type) &&
             Objects.equals(properties, ((Subject)o).properties) &&
@@ -190,7 +283,9 @@ public final class Subject extends Pattern implements Value
     @Override
     public int hashCode()
     {
-
-        return Objects.hash(id, type, properties);
+        // Memoised, as subjects are immutable once deserialized
+        if (hash == 0)
+            hash = Objects.hash(id, type, properties, context);
+        return hash;
     }
 }
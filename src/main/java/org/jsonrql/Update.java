@@ -6,9 +6,12 @@
 package org.jsonrql;
 
 import com.fasterxml.jackson.annotation.*;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static com.fasterxml.jackson.annotation.JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY;
@@ -18,6 +21,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableList;
 
+@JsonDeserialize
 public class Update extends Query<Update>
 {
     private final List<Subject> insert;
@@ -33,6 +37,60 @@ public class Update extends Query<Update>
         return new Update(null, insert, null, emptyList());
     }
 
+    /**
+     * Accumulates the clauses of an update mutably, without copying on each call
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    public static final class Builder
+    {
+        private Context context;
+        private List<Subject> insert, delete;
+        private final List<Pattern> where = new ArrayList<>();
+
+        private Builder()
+        {
+        }
+
+        public Builder context(Context context)
+        {
+            this.context = context;
+            return this;
+        }
+
+        public Builder insert(Subject... insert)
+        {
+            this.insert = Group.addAll(this.insert, insert);
+            return this;
+        }
+
+        public Builder delete(Subject... delete)
+        {
+            this.delete = Group.addAll(this.delete, delete);
+            return this;
+        }
+
+        public Builder where(Pattern... where)
+        {
+            Collections.addAll(this.where, where);
+            return this;
+        }
+
+        /**
+         * The builder can continue to be used after building, without affecting the built update.
+         */
+        public Update build()
+        {
+            return new Update(context,
+                              insert == null ? null : new ArrayList<>(insert),
+                              delete == null ? null : new ArrayList<>(delete),
+                              new ArrayList<>(where));
+        }
+    }
+
     @JsonIgnore
     public Optional<List<Subject>> insert()
     {
@@ -75,6 +133,12 @@ public class Update extends Query<Update>
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     @JsonCreator
     public Update(
         @JsonProperty("@context") Context context,
@@ -109,4 +173,18 @@ public class Update extends Query<Update>
     {
         return delete;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || super.equals(o) &&
+            Objects.equals(insert, ((Update)o).insert) &&
+            Objects.equals(delete, ((Update)o).delete);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + Objects.hash(insert, delete);
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.fasterxml.jackson.core.JsonToken.*;
+import static java.lang.String.format;
+
+/**
+ * Reads a <b>json-rql</b> update as a stream, passing each subject of its <code>@delete</code> and
+ * <code>@insert</code> clauses to a {@link Handler} as soon as it has been parsed, so that memory is bounded
+ * by the largest subject rather than the whole update.
+ * <p>
+ * Subjects are handled in document order, so any <code>@context</code> and <code>@where</code> must precede
+ * the <code>@delete</code> and <code>@insert</code> clauses; a handler can then reject an update before any
+ * of its subjects are handled. Unlike {@link Update}, the <code>@where</code> clause is optional.
+ */
+public final class UpdateReader
+{
+    public interface Handler
+    {
+        /**
+         * Called with the context of the update, if any, before any subjects
+         */
+        default void context(Context context) {}
+
+        default void delete(Subject subject) {}
+
+        default void insert(Subject subject) {}
+
+        default void where(List<Pattern> where) {}
+    }
+
+    private final JsonParser p;
+    private final Handler handler;
+    private boolean subjectsRead;
+
+    public static void read(InputStream in, Handler handler) throws IOException
+    {
+        try (JsonParser p = JsonRqlModule.mapper().getFactory().createParser(in))
+        {
+            read(p, handler);
+        }
+    }
+
+    /**
+     * Reads an update object, from the parser's current token if it has one
+     */
+    public static void read(JsonParser p, Handler handler) throws IOException
+    {
+        new UpdateReader(p, handler).read();
+    }
+
+    private UpdateReader(JsonParser p, Handler handler)
+    {
+        this.p = p;
+        this.handler = handler;
+    }
+
+    private void read() throws IOException
+    {
+        if ((p.hasCurrentToken() ? p.currentToken() : p.nextToken()) != START_OBJECT)
+            throw badToken(START_OBJECT);
+
+        while (p.nextToken() == FIELD_NAME)
+        {
+            final String field = p.getCurrentName();
+            p.nextToken();
+            switch (field)
+            {
+                case "@context":
+                    if (subjectsRead)
+                        throw new JsonMappingException(p, "@context must precede @delete and @insert");
+                    handler.context(JsonRqlModule.mapper().readValue(p, Context.class));
+                    break;
+
+                case "@delete":
+                    readSubjects(true);
+                    break;
+
+                case "@insert":
+                    readSubjects(false);
+                    break;
+
+                case "@where":
+                    if (subjectsRead)
+                        throw new JsonMappingException(p, "@where must precede @delete and @insert");
+                    final List<Pattern> where = new ArrayList<>();
+                    this.<Pattern>readEach(JsonRqlModule.patternReader(), where::add);
+                    handler.where(where);
+                    break;
+
+                default:
+                    throw new JsonMappingException(p, format("Unexpected field \"%s\" in update", field));
+            }
+        }
+    }
+
+    private void readSubjects(boolean delete) throws IOException
+    {
+        subjectsRead = true;
+        this.<Subject>readEach(JsonRqlModule.subjectReader(), delete ? handler::delete : handler::insert);
+    }
+
+    /**
+     * Reads an array of values, or a single value, from the current token
+     */
+    private <T> void readEach(ObjectReader reader, Consumer<T> consumer) throws IOException
+    {
+        if (p.currentToken() == START_ARRAY)
+        {
+            while (p.nextToken() != END_ARRAY)
+                consumer.accept(reader.readValue(p));
+        }
+        else
+        {
+            consumer.accept(reader.readValue(p));
+        }
+    }
+
+    private JsonMappingException badToken(JsonToken... allowedTokens)
+    {
+        return Jrql.Deserializer.badToken(p, allowedTokens);
+    }
+}
@@ -30,10 +30,21 @@ public interface Value extends Jrql
                     return Value.value(p.getText());
 
                 case START_OBJECT:
-                    return readAhead(p, ctxt, node ->
-                        fieldsOf(node).anyMatch("@value"::equals) ? QualifiedLiteral.class
-                            : fieldsOf(node).anyMatch(KEYWORDS.operators::containsKey) ? InlineFilter.class
-                            : Subject.class);
+                    return readDeciding(p, ctxt, new TypeDecision<Value>()
+                    {
+                        @Override public Class<? extends Value> decide(String field)
+                        {
+                            // Only subjects have non-keyword fields
+                            return "@value".equals(field) ? QualifiedLiteral.class
+                                : KEYWORDS.operators.containsKey(field) ? InlineFilter.class
+                                : isKeyword(field) ? null : Subject.class;
+                        }
+
+                        @Override public Class<? extends Value> decide()
+                        {
+                            return Subject.class;
+                        }
+                    });
 
                 default:
                     return ctxt.readValue(p, Literal.class);
@@ -9,41 +9,44 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
-import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 
 @JsonDeserialize
 public final class Variable implements Id, Result
 {
-    private static Pattern VAR_PATTERN = Pattern.compile("\\?([\\d\\w]+)");
+    private static final int MAX_INTERNED = 4096;
+    private static final LruCache<String, Variable> INTERNED = new LruCache<>(MAX_INTERNED);
 
     private final String name;
 
     public static Variable any()
     {
-        return var(randomAlphanumeric(4));
+        // Not interned, as it is unlikely to recur
+        return new Variable(randomAlphanumeric(4));
     }
 
     public static Variable var(String id)
     {
-        return new Variable("?" + id);
+        return variable("?" + id);
     }
 
     @JsonCreator
-    private Variable(String id)
+    private static Variable variable(String id)
     {
         if (id == null)
             throw new NullPointerException("Variable name cannot be null");
 
-        final Matcher match = VAR_PATTERN.matcher(id);
-        if (!match.matches())
+        if (!isVar(id))
             throw new IllegalArgumentException("Not a variable");
 
-        this.name = match.group(1);
+        return intern(id);
+    }
+
+    private Variable(String name)
+    {
+        this.name = name;
     }
 
     @Override
@@ -52,6 +55,12 @@ public final class Variable implements Id, Result
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     public String name()
     {
         return name;
@@ -67,7 +76,7 @@ public final class Variable implements Id, Result
     @Override
     public int hashCode()
     {
-        return Objects.hash(name);
+        return name.hashCode();
     }
 
     @Override
@@ -78,7 +87,30 @@ public final class Variable implements Id, Result
 
     static Optional<Variable> matchVar(Object value)
     {
-        return Optional.ofNullable(value).filter(String.class::isInstance).map(String.class::cast)
-            .map(VAR_PATTERN::matcher).filter(Matcher::matches).map(match -> new Variable(match.group()));
+        return value instanceof String && isVar((String)value) ?
+            Optional.of(intern((String)value)) : Optional.empty();
+    }
+
+    /**
+     * Equivalent to matching <code>\?([\d\w]+)</code>, without allocation
+     */
+    private static boolean isVar(String str)
+    {
+        final int length = str.length();
+        if (length < 2 || str.charAt(0) != '?')
+            return false;
+
+        for (int i = 1; i < length; i++)
+        {
+            final char c = str.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'))
+                return false;
+        }
+        return true;
+    }
+
+    private static Variable intern(String id)
+    {
+        return INTERNED.computeIfAbsent(id, v -> new Variable(v.substring(1)));
     }
 }
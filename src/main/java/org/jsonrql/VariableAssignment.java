@@ -7,6 +7,8 @@ package org.jsonrql;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
+import java.util.Objects;
+
 @JsonDeserialize
 public final class VariableAssignment implements Result
 {
@@ -25,6 +27,12 @@ public final class VariableAssignment implements Result
         visitor.visit(this);
     }
 
+    @Override
+    public <T> T apply(Transform<T> transform)
+    {
+        return transform.map(this);
+    }
+
     public Variable variable()
     {
         return variable;
@@ -34,4 +42,18 @@ public final class VariableAssignment implements Result
     {
         return expression;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return this == o || o instanceof VariableAssignment &&
+            Objects.equals(variable, ((VariableAssignment)o).variable) &&
+            Objects.equals(expression, ((VariableAssignment)o).expression);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(variable, expression);
+    }
 }
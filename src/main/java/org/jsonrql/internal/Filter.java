@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.internal;
+
+import org.jsonrql.Keywords.Keyword;
+
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static org.jsonrql.Keywords.KEYWORDS;
+
+/**
+ * One operation of an in-line filter, applied to the filter's variable and the operation's arguments, as
+ * the SPARQL function of the same name would be. A solution for which the operation is an error, for
+ * example because a variable is unbound, does not pass the filter.
+ */
+public final class Filter<V>
+{
+    private final String function;
+    /**
+     * The slot of the filtered variable, followed by the slot of each argument, or -1 for a constant
+     */
+    private final int[] slots;
+    private final V[] constants;
+    private final Values<V> values;
+    private final Pattern regex;
+
+    public Filter(String operator, int[] slots, V[] constants, Values<V> values)
+    {
+        final Keyword keyword = KEYWORDS.operators.get(operator);
+        this.function = keyword == null ? null : keyword.sparql;
+        this.slots = slots;
+        this.constants = constants;
+        this.values = values;
+
+        switch (function == null ? "" : function)
+        {
+            case "=":
+            case "!=":
+            case ">":
+            case "<":
+            case ">=":
+            case "<=":
+            case "langmatches":
+                checkArity(2, 2);
+                break;
+            case "bound":
+                checkArity(1, 1);
+                break;
+            case "in":
+            case "notin":
+                checkArity(1, Integer.MAX_VALUE);
+                break;
+            case "regex":
+                checkArity(2, 3);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    format("Operator \"%s\" cannot be used without translation to SPARQL", operator));
+        }
+        this.regex = "regex".equals(function) && slots[1] < 0 && (slots.length < 3 || slots[2] < 0) ?
+            regex(constants[1], slots.length < 3 ? null : constants[2]) : null;
+    }
+
+    /**
+     * @return the slots of any variables in the operation
+     */
+    public int[] slots()
+    {
+        return slots;
+    }
+
+    /**
+     * @param row the value in each slot of a solution, or <code>null</code> if unbound
+     * @return whether the solution passes the filter
+     */
+    public boolean test(IntFunction<V> row)
+    {
+        final V value = arg(0, row);
+        switch (function)
+        {
+            case "bound":
+                return value != null;
+            case "=":
+                return value != null && values.equal(value, arg(1, row));
+            case "!=":
+            {
+                final V other = arg(1, row);
+                return value != null && other != null && !values.equal(value, other);
+            }
+            case "in":
+            case "notin":
+            {
+                if (value == null)
+                    return false;
+                boolean found = false;
+                for (int i = 1; i < slots.length && !found; i++)
+                    found = values.equal(value, arg(i, row));
+                return found == "in".equals(function);
+            }
+            case "regex":
+            {
+                final Pattern pattern = regex != null ? regex :
+                    regex(arg(1, row), slots.length < 3 ? null : arg(2, row));
+                return pattern != null && isString(value) &&
+                    pattern.matcher(values.lexical(value)).find();
+            }
+            case "langmatches":
+                return langMatches(value, arg(1, row));
+            default:
+                final Integer compared = values.compare(value, arg(1, row));
+                if (compared == null)
+                    return false;
+                switch (function)
+                {
+                    case ">":
+                        return compared > 0;
+                    case "<":
+                        return compared < 0;
+                    case ">=":
+                        return compared >= 0;
+                    default:
+                        return compared <= 0;
+                }
+        }
+    }
+
+    private V arg(int index, IntFunction<V> row)
+    {
+        return slots[index] < 0 ? constants[index] : row.apply(slots[index]);
+    }
+
+    private void checkArity(int min, int max)
+    {
+        if (slots.length < min || slots.length > max)
+            throw new IllegalArgumentException(format("Wrong number of arguments (%d) for operator", slots.length));
+    }
+
+    private Pattern regex(V pattern, V flags)
+    {
+        if (!isString(pattern) || flags != null && !isString(flags))
+            return null;
+
+        int javaFlags = 0;
+        for (char flag : (flags == null ? "" : values.lexical(flags)).toCharArray())
+        {
+            switch (flag)
+            {
+                case 'i':
+                    javaFlags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+                    break;
+                case 's':
+                    javaFlags |= Pattern.DOTALL;
+                    break;
+                case 'm':
+                    javaFlags |= Pattern.MULTILINE;
+                    break;
+                case 'x':
+                    javaFlags |= Pattern.COMMENTS;
+                    break;
+                case 'q':
+                    javaFlags |= Pattern.LITERAL;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return Pattern.compile(values.lexical(pattern), javaFlags);
+    }
+
+    private boolean langMatches(V tag, V range)
+    {
+        if (!isString(tag) || !isString(range))
+            return false;
+
+        final String language = values.lexical(tag), languageRange = values.lexical(range);
+        if ("*".equals(languageRange))
+            return !language.isEmpty();
+        return language.equalsIgnoreCase(languageRange) ||
+            language.regionMatches(true, 0, languageRange + "-", 0, languageRange.length() + 1);
+    }
+
+    private boolean isString(V term)
+    {
+        return term != null && values.isString(term);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.internal;
+
+import org.jsonrql.*;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Projection, ordering and slicing of the solutions of a read query, whatever the representation of the
+ * solutions and of their terms.
+ */
+public final class Solutions
+{
+    private Solutions()
+    {
+    }
+
+    /**
+     * @param query a {@link Select} or {@link Distinct} query
+     * @return the results selected by the query
+     */
+    public static List<Result> selected(Read<?> query)
+    {
+        if (query instanceof Select)
+            return ((Select)query).select();
+        else if (query instanceof Distinct)
+            return ((Distinct)query).distinct();
+        else
+            throw new IllegalArgumentException("Expected a select or distinct query");
+    }
+
+    /**
+     * @param selected  the results selected by the query
+     * @param variables the variables of the query's where clause, as selected by <code>*</code>
+     * @param value     the value of a variable in a solution, or <code>null</code> if it is unbound
+     * @return the solutions of the query, each mapping the bound selected variables to their values
+     */
+    public static <S, V extends R, R> List<Map<String, R>> select(Read<?> query, List<Result> selected,
+                                                                  Collection<String> variables, List<S> solutions,
+                                                                  BiFunction<S, String, V> value, Values<V> values)
+    {
+        final Set<String> projection = new LinkedHashSet<>();
+        selected.forEach(result -> {
+            if (result instanceof Result.Star)
+                projection.addAll(variables);
+            else if (result instanceof Variable)
+                projection.add(((Variable)result).name());
+            // Other results are not translated to Jena either
+        });
+        Stream<Map<String, R>> projected = ordered(query, solutions, value, values).stream().map(solution -> {
+            final Map<String, R> bindings = new LinkedHashMap<>();
+            for (String variable : projection)
+            {
+                final V bound = value.apply(solution, variable);
+                if (bound != null)
+                    bindings.put(variable, bound);
+            }
+            return bindings;
+        });
+        if (query instanceof Distinct)
+            projected = projected.distinct();
+        return slice(query, projected).collect(toList());
+    }
+
+    /**
+     * @return the solutions in the order of the query, if it has one
+     */
+    public static <S, V> List<S> ordered(Read<?> query, List<S> solutions, BiFunction<S, String, V> value,
+                                         Values<V> values)
+    {
+        final List<Expression> orderBy = query.orderBy().orElse(Collections.emptyList());
+        if (orderBy.isEmpty())
+            return solutions;
+
+        Comparator<S> order = (a, b) -> 0;
+        for (Expression expression : orderBy)
+        {
+            // Ordering by a constant has no effect
+            if (expression instanceof Variable)
+            {
+                final String variable = ((Variable)expression).name();
+                order = order.thenComparing(solution -> value.apply(solution, variable), values::order);
+            }
+        }
+        final List<S> ordered = new ArrayList<>(solutions);
+        ordered.sort(order);
+        return ordered;
+    }
+
+    /**
+     * @return the solutions after the query's offset, up to its limit
+     */
+    public static <T> Stream<T> slice(Read<?> query, Stream<T> solutions)
+    {
+        if (query.offset().isPresent())
+            solutions = solutions.skip(query.offset().get());
+        if (query.limit().isPresent())
+            solutions = solutions.limit(query.limit().get());
+        return solutions;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.internal;
+
+/**
+ * The value semantics of the terms of solutions, so that filters, projection and ordering are the same for
+ * the Jena nodes of a {@link org.jsonrql.store.JsonRqlStore} and the expanded values of
+ * {@link org.jsonrql.jsonld.JsonLdDocuments}. A <code>null</code> term is unbound.
+ */
+public interface Values<V>
+{
+    /**
+     * @return the value comparison of two literals, or <code>null</code> if they are not comparable
+     */
+    Integer compare(V a, V b);
+
+    boolean isLiteral(V term);
+
+    boolean isBlank(V term);
+
+    /**
+     * @return whether the term is a simple or language-tagged string
+     */
+    boolean isString(V term);
+
+    /**
+     * @return the lexical form of a literal, or the IRI or label of a node
+     */
+    String lexical(V term);
+
+    /**
+     * @return the datatype IRI of a literal
+     */
+    String datatype(V literal);
+
+    /**
+     * As for SPARQL <code>=</code>, except that incomparable literals are unequal rather than an error
+     */
+    default boolean equal(V a, V b)
+    {
+        final Integer compared = compare(a, b);
+        return compared != null ? compared == 0 : a != null && a.equals(b);
+    }
+
+    /**
+     * SPARQL ordering: unbound, then blank nodes, then IRIs, then literals
+     */
+    default int order(V a, V b)
+    {
+        final int rank = Integer.compare(rank(a), rank(b));
+        if (rank != 0 || a == null)
+            return rank;
+
+        final Integer compared = compare(a, b);
+        if (compared != null)
+            return compared;
+        else if (!isLiteral(a))
+            return lexical(a).compareTo(lexical(b));
+
+        final int lexical = lexical(a).compareTo(lexical(b));
+        return lexical != 0 ? lexical : datatype(a).compareTo(datatype(b));
+    }
+
+    default int rank(V term)
+    {
+        return term == null ? 0 : isBlank(term) ? 1 : isLiteral(term) ? 3 : 2;
+    }
+}
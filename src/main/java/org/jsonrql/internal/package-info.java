@@ -0,0 +1,11 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+/**
+ * Query evaluation shared by the {@link org.jsonrql.store.JsonRqlStore} and
+ * {@link org.jsonrql.jsonld.JsonLdDocuments} engines. Internal to this library, and not part of its API; the
+ * types may change without notice.
+ */
+package org.jsonrql.internal;
@@ -5,7 +5,6 @@
 
 package org.jsonrql.jena;
 
-import com.github.jsonldjava.utils.JsonUtils;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
@@ -16,20 +15,22 @@ import org.apache.jena.sparql.core.BasicPattern;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.update.UpdateRequest;
 import org.jsonrql.*;
+import org.jsonrql.jsonld.CompiledContext;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
-import static java.lang.String.format;
 import static org.apache.jena.riot.Lang.JSONLD;
 import static org.jsonrql.jsonld.JsonLd.isHiddenVar;
 import static org.jsonrql.jsonld.JsonLd.unhide;
 
 public interface JsonRqlJena
 {
-    static Query asSparql(org.jsonrql.Read jrql)
+    static Query asSparql(org.jsonrql.Read<?> jrql)
     {
         return new JsonRqlJenaQueryBuilder(jrql).build();
     }
@@ -39,19 +40,65 @@ public interface JsonRqlJena
         return new JsonRqlJenaUpdateBuilder(jrql).build();
     }
 
-    static BasicPattern asPattern(List graph, Map context)
+    /**
+     * Translates a sequence of updates to a single request, merging ground data as per {@link JsonRqlJenaBatch}
+     */
+    static UpdateRequest asSparql(Stream<org.jsonrql.Update> jrql)
     {
-        Map jsonld = new HashMap();
-        //noinspection unchecked
+        return new JsonRqlJenaBatch().addAll(jrql).drain();
+    }
+
+    static JsonRqlJenaPrepared<Query> prepare(org.jsonrql.Read<?> jrql)
+    {
+        return JsonRqlJenaPrepared.prepare(jrql);
+    }
+
+    static JsonRqlJenaPrepared<UpdateRequest> prepare(org.jsonrql.Update jrql)
+    {
+        return JsonRqlJenaPrepared.prepare(jrql);
+    }
+
+    static BasicPattern asPattern(Subject subject, Context context)
+    {
+        return asPattern(subject, CompiledContext.compile(context));
+    }
+
+    static BasicPattern asPattern(Subject subject, CompiledContext context)
+    {
+        return new JsonRqlJenaPatternBuilder(context).add(subject).build();
+    }
+
+    static BasicPattern asPattern(Collection<Subject> subjects, Context context)
+    {
+        return asPattern(subjects, CompiledContext.compile(context));
+    }
+
+    static BasicPattern asPattern(Collection<Subject> subjects, CompiledContext context)
+    {
+        return new JsonRqlJenaPatternBuilder(context).addAll(subjects).build();
+    }
+
+    /**
+     * Converts an identifier or literal to a node, as for a property value with no term definition
+     */
+    static Node asNode(Value value, CompiledContext context)
+    {
+        return new JsonRqlJenaPatternBuilder(context).node(value);
+    }
+
+    static BasicPattern asPattern(List<?> graph, Map<String, ?> context)
+    {
+        Map<String, Object> jsonld = new HashMap<>();
         jsonld.put("@graph", graph);
         return asPattern(jsonld, context);
     }
 
-    static BasicPattern asPattern(Map graph, Map context)
+    static BasicPattern asPattern(Map<String, ?> graph, Map<String, ?> context)
     {
-        //noinspection unchecked
-        graph.put("@context", context);
-        return asPattern(graph);
+        // Any map of JSON-LD values also accepts a context
+        @SuppressWarnings("unchecked") final Map<String, Object> jsonld = (Map<String, Object>)graph;
+        jsonld.put("@context", context);
+        return asPattern(jsonld);
     }
 
     static BasicPattern asPattern(Object jsonld)
@@ -66,11 +113,21 @@ public interface JsonRqlJena
         return pattern;
     }
 
+    /**
+     * @return the expression in SSE syntax, with names expanded as in the default context
+     * @deprecated filters and orderings are translated to Jena expressions directly by {@link #asSparql}
+     */
+    @Deprecated
+    static String asExpr(Expression expression)
+    {
+        return new JsonRqlJenaExprBuilder(CompiledContext.compile(Context.context())).expr(expression).toString();
+    }
+
     static String toJson(Object jsonld)
     {
         try
         {
-            return JsonUtils.toString(jsonld);
+            return JsonRqlModule.writer().writeValueAsString(jsonld);
         }
         catch (IOException e)
         {
@@ -82,32 +139,4 @@ public interface JsonRqlJena
     {
         return node.isURI() && isHiddenVar(node.getURI()) ? Var.alloc(unhide(node.getURI())) : node;
     }
-
-    static String asExpr(Expression expression)
-    {
-        return Jrql.map(expression, new Jrql.Transform<String>()
-        {
-            @Override
-            public String map(Variable variable)
-            {
-                return variable.toString();
-            }
-
-            @Override
-            public String map(Name name)
-            {
-                // TODO: This will work for @vocab but not @base, see Query#prefixes
-                return format(name.toString().contains(":") ? "%s" : "<%s>", name);
-            }
-
-            @Override
-            public String map(Literal literal)
-            {
-                final String value = toJson(literal.value()); // TODO: not quite the same as SSE encoding
-                return literal.type().isPresent() ? format("%s^^%s", value, JsonRqlJena.asExpr(literal.type().get()))
-                    : literal.language().isPresent() ? format("%s@%s", value, literal.language().get())
-                    : value;
-            }
-        });
-    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.modify.request.QuadDataAcc;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.jsonrql.Context;
+import org.jsonrql.Update;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.jsonrql.jena.JsonRqlJena.asPattern;
+
+/**
+ * Translates a sequence of <b>json-rql</b> updates into batched Jena update requests, which are passed to a
+ * sink when the batch reaches a maximum number of updates, or when the first update in the batch is older than
+ * a maximum delay. The delay is timed by a scheduler, so the sink may be called from the scheduler's thread.
+ * <p>
+ * Consecutive updates with no <code>@where</code> clause and ground <code>@insert</code> and
+ * <code>@delete</code> subjects are merged into single <code>DELETE DATA</code> and <code>INSERT DATA</code>
+ * operations. An update with only a <code>@delete</code> deletes nothing unless all of its triples exist, so
+ * it is only merged if it has a single triple. Other updates are translated individually in order. Updates
+ * sharing a context instance share its compilation.
+ */
+public class JsonRqlJenaBatch implements AutoCloseable
+{
+    private final int maximumSize;
+    private final long maximumDelayNanos;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Consumer<UpdateRequest> sink;
+
+    private UpdateRequest request = UpdateFactory.create();
+    private final Set<Triple> deleteData = new LinkedHashSet<>(), insertData = new LinkedHashSet<>();
+    private int size;
+    /**
+     * The number of batches started, identifying the batch a scheduled flush is for
+     */
+    private long batches;
+    private ScheduledFuture<?> scheduledFlush;
+    private Context lastContext;
+    private CompiledContext lastCompiled;
+
+    /**
+     * Creates a batch timing its delay with its own scheduler thread, which is shut down on {@link #close()}.
+     */
+    public JsonRqlJenaBatch(int maximumSize, long maximumDelay, TimeUnit unit, Consumer<UpdateRequest> sink)
+    {
+        this(maximumSize, maximumDelay, unit, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "json-rql-batch");
+            thread.setDaemon(true);
+            return thread;
+        }), true, sink);
+    }
+
+    /**
+     * Creates a batch timing its delay with the given scheduler, which remains owned by the caller.
+     */
+    public JsonRqlJenaBatch(int maximumSize, long maximumDelay, TimeUnit unit,
+                            ScheduledExecutorService scheduler, Consumer<UpdateRequest> sink)
+    {
+        this(maximumSize, maximumDelay, unit, scheduler, false, sink);
+    }
+
+    /**
+     * Creates an unlimited batch with no scheduler, which is only emptied by {@link #drain()}.
+     */
+    JsonRqlJenaBatch()
+    {
+        this(Integer.MAX_VALUE, Long.MAX_VALUE, NANOSECONDS, null, false, request -> {});
+    }
+
+    private JsonRqlJenaBatch(int maximumSize, long maximumDelay, TimeUnit unit,
+                             ScheduledExecutorService scheduler, boolean ownsScheduler, Consumer<UpdateRequest> sink)
+    {
+        if (maximumSize < 1 || maximumDelay < 0)
+        {
+            if (ownsScheduler)
+                scheduler.shutdown();
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+
+        this.maximumSize = maximumSize;
+        this.maximumDelayNanos = unit.toNanos(maximumDelay);
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.sink = sink;
+    }
+
+    public synchronized JsonRqlJenaBatch add(Update jrql)
+    {
+        final CompiledContext context = compile(jrql.context());
+        if (!addData(jrql, context))
+        {
+            appendData();
+            request.add(new JsonRqlJenaUpdateBuilder(jrql, context).buildUpdate());
+        }
+
+        if (++size >= maximumSize)
+        {
+            flush();
+        }
+        else if (size == 1 && scheduler != null)
+        {
+            final long batch = ++batches;
+            scheduledFlush = scheduler.schedule(() -> flushExpired(batch), maximumDelayNanos, NANOSECONDS);
+        }
+        return this;
+    }
+
+    public JsonRqlJenaBatch addAll(Stream<Update> jrql)
+    {
+        jrql.forEachOrdered(this::add);
+        return this;
+    }
+
+    /**
+     * Passes any pending updates to the sink as a single request.
+     */
+    public synchronized void flush()
+    {
+        if (size > 0)
+            sink.accept(drain());
+    }
+
+    /**
+     * Flushes any pending updates, and shuts down the scheduler if it is owned by this batch.
+     */
+    @Override public void close()
+    {
+        flush();
+        if (ownsScheduler)
+            scheduler.shutdown();
+    }
+
+    private synchronized void flushExpired(long batch)
+    {
+        // The batch may already have been flushed, and another started
+        if (batch == batches)
+            flush();
+    }
+
+    /**
+     * @return the pending updates as a single request, resetting the batch without calling the sink
+     */
+    synchronized UpdateRequest drain()
+    {
+        appendData();
+        final UpdateRequest drained = request;
+        request = UpdateFactory.create();
+        size = 0;
+        if (scheduledFlush != null)
+        {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return drained;
+    }
+
+    /**
+     * Adds the ground data of an update with no where clause to the pending data operations.
+     *
+     * @return <code>false</code> if the update cannot be expressed as data
+     */
+    private boolean addData(Update jrql, CompiledContext context)
+    {
+        if (!jrql.where().isEmpty())
+            return false;
+
+        final BasicPattern delete = jrql.delete().map(subjects -> asPattern(subjects, context)).orElse(null),
+            insert = jrql.insert().map(subjects -> asPattern(subjects, context)).orElse(null);
+        if (delete != null && !isGround(delete, false) || insert != null && !isGround(insert, true))
+            return false;
+        // Without an insert, the update is a DELETE WHERE, which requires all of its triples to match
+        if (insert == null && delete != null && delete.size() > 1)
+            return false;
+
+        final Set<Triple> deletes = delete == null ? Collections.emptySet() : new LinkedHashSet<>(delete.getList());
+        // Deleting data inserted earlier in the batch must happen after that insert
+        if (deletes.stream().anyMatch(insertData::contains))
+            appendData();
+
+        deleteData.addAll(deletes);
+        if (insert != null)
+            insertData.addAll(insert.getList());
+        return true;
+    }
+
+    private void appendData()
+    {
+        if (!deleteData.isEmpty())
+        {
+            final QuadDataAcc quads = new QuadDataAcc();
+            deleteData.forEach(quads::addTriple);
+            request.add(new UpdateDataDelete(quads));
+            deleteData.clear();
+        }
+        if (!insertData.isEmpty())
+        {
+            final QuadDataAcc quads = new QuadDataAcc();
+            insertData.forEach(quads::addTriple);
+            request.add(new UpdateDataInsert(quads));
+            insertData.clear();
+        }
+    }
+
+    private CompiledContext compile(Context context)
+    {
+        if (context != lastContext)
+        {
+            lastCompiled = CompiledContext.compile(context);
+            lastContext = context;
+        }
+        return lastCompiled;
+    }
+
+    /**
+     * Blank nodes are permitted in inserted data, but not in deleted data
+     */
+    private static boolean isGround(BasicPattern pattern, boolean allowBlank)
+    {
+        for (Triple triple : pattern)
+            if (!isGround(triple.getSubject(), allowBlank) ||
+                !isGround(triple.getPredicate(), allowBlank) ||
+                !isGround(triple.getObject(), allowBlank))
+                return false;
+        return true;
+    }
+
+    private static boolean isGround(Node node, boolean allowBlank)
+    {
+        return node.isConcrete() && (allowBlank || !node.isBlank());
+    }
+}
@@ -5,32 +5,30 @@
 
 package org.jsonrql.jena;
 
-import org.apache.jena.shared.PrefixMapping;
-import org.apache.jena.sparql.sse.SSE;
 import org.apache.jena.sparql.syntax.*;
 import org.jsonrql.*;
+import org.jsonrql.jsonld.CompiledContext;
 
-import java.util.Map;
 import java.util.Optional;
 
-import static java.lang.String.format;
-import static java.util.stream.Collectors.joining;
-import static org.jsonrql.Keywords.KEYWORDS;
 import static org.jsonrql.jena.JsonRqlJena.asPattern;
-import static org.jsonrql.jsonld.JsonLd.asGraph;
-import static org.jsonrql.jsonld.JsonLd.asJsonLd;
 
 public abstract class JsonRqlJenaBuilder<T>
 {
     protected final Query<?> jrql;
-    protected final PrefixMapping prefixes;
-    protected final Map<String, Object> ctx;
+    protected final CompiledContext context;
+    protected final JsonRqlJenaExprBuilder exprs;
 
     JsonRqlJenaBuilder(Query<?> jrql)
+    {
+        this(jrql, CompiledContext.compile(jrql.context()));
+    }
+
+    JsonRqlJenaBuilder(Query<?> jrql, CompiledContext context)
     {
         this.jrql = jrql;
-        this.ctx = asJsonLd(jrql.context());
-        this.prefixes = PrefixMapping.Factory.create().setNsPrefixes(jrql.context().prefixes());
+        this.context = context;
+        this.exprs = new JsonRqlJenaExprBuilder(context);
     }
 
     abstract T build();
@@ -48,7 +46,7 @@ public abstract class JsonRqlJenaBuilder<T>
         {
             @Override public void visit(Subject subject)
             {
-                elementGroup.addElement(new ElementPathBlock(asPattern(asGraph(subject), ctx)));
+                elementGroup.addElement(new ElementPathBlock(asPattern(subject, context)));
 
                 // Pull out any in-line filters recursively
                 subject.values().forEach(this::extractFilters);
@@ -84,14 +82,7 @@ public abstract class JsonRqlJenaBuilder<T>
                     @Override
                     public void visit(InlineFilter inlineFilter)
                     {
-                        inlineFilter.filters().entrySet().stream()
-                            .map(opRhs -> format("(%s %s %s)",
-                                                 KEYWORDS.operators.get(opRhs.getKey()).sparql,
-                                                 inlineFilter.variable(),
-                                                 // TODO: This will probably break with @in
-                                                 opRhs.getValue().stream()
-                                                     .map(JsonRqlJena::asExpr).collect(joining(" "))))
-                            .forEach(expr -> elementGroup.addElement(new ElementFilter(SSE.parseExpr(expr, prefixes))));
+                        exprs.filters(inlineFilter).forEach(expr -> elementGroup.addElement(new ElementFilter(expr)));
                     }
                 });
             }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.modify.request.*;
+import org.apache.jena.sparql.syntax.*;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformCopyBase;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformer;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+import org.jsonrql.Read;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache of translations of <b>json-rql</b> queries to Jena queries and updates,
+ * keyed by the structural equality of the <b>json-rql</b> query, including its context.
+ * <p>
+ * Entries are evicted in least-recently-used order when either the maximum number of entries or the
+ * maximum total weight is exceeded. The weight of an entry is the number of triple patterns, quads,
+ * filters and other elements in its translation. The cache is striped, so the limits are applied per
+ * stripe.
+ * <p>
+ * Cached translations are never exposed; each call returns a copy, which the caller is free to modify.
+ */
+public class JsonRqlJenaCache
+{
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+    public JsonRqlJenaCache(int maximumSize, long maximumWeight)
+    {
+        if (maximumSize < 0 || maximumWeight < 0)
+            throw new IllegalArgumentException("Cache limits cannot be negative");
+
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe(divide(maximumSize, i), divide(maximumWeight, i));
+    }
+
+    public Query asSparql(Read<?> jrql)
+    {
+        return ((Query)get(jrql, q -> new JsonRqlJenaQueryBuilder((Read<?>)q).build())).cloneQuery();
+    }
+
+    public UpdateRequest asSparql(org.jsonrql.Update jrql)
+    {
+        return copy((UpdateRequest)get(jrql, q -> new JsonRqlJenaUpdateBuilder((org.jsonrql.Update)q).build()));
+    }
+
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    public long missCount()
+    {
+        return misses.sum();
+    }
+
+    public long evictionCount()
+    {
+        return evictions.sum();
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    public long weight()
+    {
+        long weight = 0;
+        for (Stripe stripe : stripes)
+            weight += stripe.weight();
+        return weight;
+    }
+
+    public void clear()
+    {
+        for (Stripe stripe : stripes)
+            stripe.clear();
+    }
+
+    private Object get(org.jsonrql.Query<?> jrql, Function<org.jsonrql.Query<?>, Object> translate)
+    {
+        final Stripe stripe = stripes[(jrql.hashCode() & 0x7fffffff) % STRIPES];
+        Object sparql = stripe.get(jrql);
+        if (sparql != null)
+        {
+            hits.increment();
+        }
+        else
+        {
+            misses.increment();
+            // Translate outside the lock; concurrent misses on the same query may translate twice
+            sparql = translate.apply(jrql);
+            stripe.put(jrql, sparql,
+                       sparql instanceof Query ? weigh((Query)sparql) : weigh((UpdateRequest)sparql));
+        }
+        return sparql;
+    }
+
+    private static long weigh(Query query)
+    {
+        long weight = 1 + weigh(query.getQueryPattern());
+        if (query.getConstructTemplate() != null)
+            weight += query.getConstructTemplate().getTriples().size();
+        if (query.getOrderBy() != null)
+            weight += query.getOrderBy().size();
+        return weight;
+    }
+
+    private static long weigh(UpdateRequest request)
+    {
+        long weight = 1;
+        for (Update update : request)
+        {
+            if (update instanceof UpdateModify)
+                weight += weigh(((UpdateModify)update).getWherePattern()) +
+                    ((UpdateModify)update).getInsertQuads().size() + ((UpdateModify)update).getDeleteQuads().size();
+            else if (update instanceof UpdateDeleteWhere)
+                weight += ((UpdateDeleteWhere)update).getQuads().size();
+            else if (update instanceof UpdateData)
+                weight += ((UpdateData)update).getQuads().size();
+        }
+        return weight;
+    }
+
+    private static long weigh(Element element)
+    {
+        if (element == null)
+            return 0;
+
+        final long[] weight = {0};
+        ElementWalker.walk(element, new ElementVisitorBase()
+        {
+            @Override public void visit(ElementPathBlock el)
+            {
+                weight[0] += el.getPattern().size();
+            }
+
+            @Override public void visit(ElementFilter el)
+            {
+                weight[0]++;
+            }
+
+            @Override public void visit(ElementUnion el)
+            {
+                weight[0]++;
+            }
+        });
+        return weight[0];
+    }
+
+    static UpdateRequest copy(UpdateRequest request)
+    {
+        final UpdateRequest copy = new UpdateRequest();
+        copy.setPrefixMapping(PrefixMapping.Factory.create().setNsPrefixes(request.getPrefixMapping()));
+        if (request.explicitlySetBaseURI())
+            copy.setBaseURI(request.getBaseURI());
+        for (Update update : request)
+            copy.add(copy(update));
+        return copy;
+    }
+
+    private static Update copy(Update update)
+    {
+        if (update instanceof UpdateModify)
+        {
+            final UpdateModify modify = (UpdateModify)update, modifyCopy = new UpdateModify();
+            modify.getDeleteQuads().forEach(modifyCopy.getDeleteAcc()::addQuad);
+            modify.getInsertQuads().forEach(modifyCopy.getInsertAcc()::addQuad);
+            modifyCopy.setHasDeleteClause(modify.hasDeleteClause());
+            modifyCopy.setHasInsertClause(modify.hasInsertClause());
+            if (modify.getWherePattern() != null)
+                modifyCopy.setElement(
+                    ElementTransformer.transform(modify.getWherePattern(), new ElementTransformCopyBase(true)));
+            return modifyCopy;
+        }
+        else if (update instanceof UpdateDeleteWhere)
+        {
+            final QuadAcc quads = new QuadAcc();
+            ((UpdateDeleteWhere)update).getQuads().forEach(quads::addQuad);
+            return new UpdateDeleteWhere(quads);
+        }
+        else if (update instanceof UpdateDataInsert)
+        {
+            return new UpdateDataInsert(new QuadDataAcc(((UpdateDataInsert)update).getQuads()));
+        }
+        else if (update instanceof UpdateDataDelete)
+        {
+            return new UpdateDataDelete(new QuadDataAcc(((UpdateDataDelete)update).getQuads()));
+        }
+        else
+        {
+            // Other updates are not produced by translation of json-rql
+            return update;
+        }
+    }
+
+    private static int divide(int total, int stripe)
+    {
+        return total / STRIPES + (stripe < total % STRIPES ? 1 : 0);
+    }
+
+    private static long divide(long total, int stripe)
+    {
+        return total / STRIPES + (stripe < total % STRIPES ? 1 : 0);
+    }
+
+    private static final class Entry
+    {
+        final Object sparql;
+        final long weight;
+
+        Entry(Object sparql, long weight)
+        {
+            this.sparql = sparql;
+            this.weight = weight;
+        }
+    }
+
+    private final class Stripe
+    {
+        final int maximumSize;
+        final long maximumWeight;
+        final LinkedHashMap<org.jsonrql.Query<?>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+
+        Stripe(int maximumSize, long maximumWeight)
+        {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+        }
+
+        synchronized Object get(org.jsonrql.Query<?> jrql)
+        {
+            final Entry entry = entries.get(jrql);
+            return entry == null ? null : entry.sparql;
+        }
+
+        synchronized void put(org.jsonrql.Query<?> jrql, Object sparql, long entryWeight)
+        {
+            if (entryWeight > maximumWeight || maximumSize == 0)
+                return;
+
+            final Entry previous = entries.put(jrql, new Entry(sparql, entryWeight));
+            weight += entryWeight - (previous == null ? 0 : previous.weight);
+
+            final Iterator<Map.Entry<org.jsonrql.Query<?>, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maximumSize || weight > maximumWeight)
+            {
+                weight -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized int size()
+        {
+            return entries.size();
+        }
+
+        synchronized long weight()
+        {
+            return weight;
+        }
+
+        synchronized void clear()
+        {
+            entries.clear();
+            weight = 0;
+        }
+    }
+}
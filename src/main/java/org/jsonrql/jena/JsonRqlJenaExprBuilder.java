@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.sparql.expr.*;
+import org.jsonrql.*;
+import org.jsonrql.Literal.*;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.jena.datatypes.xsd.XSDDatatype.XSDdecimal;
+import static org.apache.jena.datatypes.xsd.XSDDatatype.XSDdouble;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.jsonrql.Keywords.KEYWORDS;
+import static org.jsonrql.jena.JsonRqlJenaPatternBuilder.doubleLexical;
+
+/**
+ * Compiles <b>json-rql</b> expressions and in-line filters directly to Jena expressions, applying the
+ * JSON-LD context to IRIs, without formatting and re-parsing SPARQL Syntax Expressions.
+ * <p>
+ * Operators are resolved through their SPARQL names in {@link Keywords#operators}. Literal numbers
+ * have the types they would have if written in SPARQL, so that <code>4.5</code> is a decimal.
+ */
+public class JsonRqlJenaExprBuilder
+{
+    private static final Map<String, Function<ExprList, Expr>> FUNCTIONS = new HashMap<>();
+    private static final Map<String, Function<ExprList, Expr>> OPERATORS;
+
+    static
+    {
+        FUNCTIONS.put("=", binary(E_Equals::new));
+        FUNCTIONS.put("!=", binary(E_NotEquals::new));
+        FUNCTIONS.put(">", binary(E_GreaterThan::new));
+        FUNCTIONS.put("<", binary(E_LessThan::new));
+        FUNCTIONS.put(">=", binary(E_GreaterThanOrEqual::new));
+        FUNCTIONS.put("<=", binary(E_LessThanOrEqual::new));
+        FUNCTIONS.put("!", unary(E_LogicalNot::new));
+        FUNCTIONS.put("&&", binary(E_LogicalAnd::new));
+        FUNCTIONS.put("||", binary(E_LogicalOr::new));
+        FUNCTIONS.put("+", unaryOrBinary(E_UnaryPlus::new, E_Add::new));
+        FUNCTIONS.put("-", unaryOrBinary(E_UnaryMinus::new, E_Subtract::new));
+        FUNCTIONS.put("*", binary(E_Multiply::new));
+        FUNCTIONS.put("/", binary(E_Divide::new));
+        FUNCTIONS.put("bound", unary(E_Bound::new));
+        FUNCTIONS.put("regex", args -> {
+            checkArity(args, 2, 3);
+            return new E_Regex(args.get(0), args.get(1), args.size() > 2 ? args.get(2) : null);
+        });
+        FUNCTIONS.put("in", args -> {
+            checkArity(args, 1, Integer.MAX_VALUE);
+            return new E_OneOf(args.get(0), args.tail(1));
+        });
+        FUNCTIONS.put("notin", args -> {
+            checkArity(args, 1, Integer.MAX_VALUE);
+            return new E_NotOneOf(args.get(0), args.tail(1));
+        });
+        FUNCTIONS.put("str", unary(E_Str::new));
+        FUNCTIONS.put("lang", unary(E_Lang::new));
+        FUNCTIONS.put("langmatches", binary(E_LangMatches::new));
+
+        final Map<String, Function<ExprList, Expr>> operators = new HashMap<>();
+        KEYWORDS.operators.forEach((operator, keyword) -> {
+            final Function<ExprList, Expr> function = FUNCTIONS.get(keyword.sparql);
+            // Aggregations and ordering directions are not valid in a filter
+            if (function != null && !keyword.aggregation)
+                operators.put(operator, keyword.associative ? associative(function) : function);
+        });
+        OPERATORS = unmodifiableMap(operators);
+    }
+
+    private final CompiledContext context;
+    private final Jrql.Transform<Expr> exprs = new Jrql.Transform<Expr>()
+    {
+        @Override public Expr map(Variable variable)
+        {
+            return new ExprVar(variable.name());
+        }
+
+        @Override public Expr map(Name name)
+        {
+            return NodeValue.makeNode(createURI(context.expandIri(name.toString(), true, false)));
+        }
+
+        @Override public Expr map(Literal literal)
+        {
+            return literal(literal);
+        }
+    };
+    private final Jrql.Transform<String> datatypes = new Jrql.Transform<String>()
+    {
+        @Override public String map(Variable variable)
+        {
+            throw new IllegalArgumentException("Variable found as literal datatype");
+        }
+
+        @Override public String map(Name name)
+        {
+            return context.expandIri(name.toString(), true, true);
+        }
+    };
+
+    JsonRqlJenaExprBuilder(CompiledContext context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * @return the filter expressions of the given in-line filter, one per operator
+     */
+    ExprList filters(InlineFilter inlineFilter)
+    {
+        final ExprList filters = new ExprList();
+        final ExprVar variable = new ExprVar(inlineFilter.variable().name());
+        inlineFilter.filters().forEach((operator, arguments) -> {
+            final ExprList args = new ExprList(variable);
+            arguments.forEach(argument -> args.add(expr(argument)));
+            filters.add(operation(operator, args));
+        });
+        return filters;
+    }
+
+    Expr expr(Expression expression)
+    {
+        return Jrql.map(expression, exprs);
+    }
+
+    static Expr operation(String operator, ExprList args)
+    {
+        final Function<ExprList, Expr> function = OPERATORS.get(operator);
+        if (function == null)
+            throw new IllegalArgumentException(format("Operator \"%s\" cannot be used in a filter", operator));
+        return function.apply(args);
+    }
+
+    private NodeValue literal(Literal literal)
+    {
+        if (literal instanceof IntLiteral)
+            return NodeValue.makeInteger(((IntLiteral)literal).intValue());
+        else if (literal instanceof LongLiteral)
+            return NodeValue.makeInteger(((LongLiteral)literal).longValue());
+        else if (literal instanceof DoubleLiteral)
+            return number(Double.toString(((DoubleLiteral)literal).doubleValue()));
+        else if (literal instanceof BooleanLiteral)
+            return NodeValue.makeBoolean(((BooleanLiteral)literal).booleanValue());
+        else if (literal instanceof DecimalLiteral)
+            return number(((DecimalLiteral)literal).decimalValue());
+
+        final Object value = literal.value();
+        if (literal.type().isPresent())
+        {
+            final String datatype = Jrql.map(literal.type().get(), datatypes);
+            return NodeValue.makeNode(value.toString(), null, datatype);
+        }
+        else if (literal.language().isPresent())
+        {
+            return NodeValue.makeNode(value.toString(), literal.language().get(), (String)null);
+        }
+        else if (value instanceof String)
+        {
+            return NodeValue.makeString((String)value);
+        }
+        else if (value instanceof Boolean)
+        {
+            return NodeValue.makeBoolean((Boolean)value);
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            return number(value.toString());
+        }
+        else if (value instanceof BigDecimal)
+        {
+            return number((BigDecimal)value);
+        }
+        else
+        {
+            return NodeValue.makeInteger(value.toString());
+        }
+    }
+
+    /**
+     * As in SPARQL, a number with an exponent is a double, otherwise a decimal
+     */
+    private static NodeValue number(String lexical)
+    {
+        final boolean isDouble = lexical.indexOf('E') >= 0 || lexical.equals("NaN") || lexical.endsWith("Infinity");
+        return NodeValue.makeNode(lexical, isDouble ? XSDdouble : XSDdecimal);
+    }
+
+    /**
+     * As for a JSON number in a pattern, an integer unless it has a fraction or exponent, otherwise a double
+     */
+    private static NodeValue number(BigDecimal number)
+    {
+        return number.scale() == 0 ? NodeValue.makeInteger(number.toBigInteger()) :
+            NodeValue.makeNode(doubleLexical(number.doubleValue()), XSDdouble);
+    }
+
+    private static Function<ExprList, Expr> unary(Function<Expr, Expr> function)
+    {
+        return args -> {
+            checkArity(args, 1, 1);
+            return function.apply(args.get(0));
+        };
+    }
+
+    private static Function<ExprList, Expr> binary(BiFunction<Expr, Expr, Expr> function)
+    {
+        return args -> {
+            checkArity(args, 2, 2);
+            return function.apply(args.get(0), args.get(1));
+        };
+    }
+
+    private static Function<ExprList, Expr> unaryOrBinary(Function<Expr, Expr> unary,
+                                                          BiFunction<Expr, Expr, Expr> binary)
+    {
+        return args -> {
+            checkArity(args, 1, 2);
+            return args.size() == 1 ? unary.apply(args.get(0)) : binary.apply(args.get(0), args.get(1));
+        };
+    }
+
+    /**
+     * An associative operator can take any number of arguments, folding from the left
+     */
+    private static Function<ExprList, Expr> associative(Function<ExprList, Expr> binary)
+    {
+        return args -> {
+            if (args.size() <= 2)
+                return binary.apply(args);
+
+            Expr expr = args.get(0);
+            for (int i = 1; i < args.size(); i++)
+                expr = binary.apply(new ExprList(asList(expr, args.get(i))));
+            return expr;
+        };
+    }
+
+    private static void checkArity(ExprList args, int min, int max)
+    {
+        if (args.size() < min || args.size() > max)
+            throw new IllegalArgumentException(format("Wrong number of arguments (%d) for operator", args.size()));
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.graph.NodeConst;
+import org.apache.jena.vocabulary.RDF;
+import org.jsonrql.*;
+import org.jsonrql.Context.ContainerType;
+import org.jsonrql.Literal.*;
+import org.jsonrql.jsonld.CompiledContext;
+import org.jsonrql.jsonld.CompiledContext.Term;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.apache.jena.datatypes.xsd.XSDDatatype.*;
+import static org.apache.jena.graph.NodeFactory.createBlankNode;
+import static org.apache.jena.graph.NodeFactory.createURI;
+
+/**
+ * Compiles <b>json-rql</b> subjects directly to Jena triples, applying the JSON-LD context, without
+ * going through a JSON-LD serialisation and parse.
+ * <p>
+ * The triples are the same as would be obtained by converting the subjects with
+ * {@link org.jsonrql.jsonld.JsonLd#asGraph(Subject)} and parsing the result as JSON-LD, except that
+ * variables become {@link Var}s directly, and the triples are in subject traversal order, with a nested
+ * subject's triples following the triple that refers to it.
+ */
+public class JsonRqlJenaPatternBuilder
+{
+    private final CompiledContext context;
+    private static final ThreadLocal<DecimalFormat> DOUBLE_FORMAT = ThreadLocal.withInitial(
+        () -> new DecimalFormat("0.0###############E0", DecimalFormatSymbols.getInstance(Locale.US)));
+
+    private final Set<Triple> triples = new LinkedHashSet<>();
+    private final Map<String, Node> blankNodes = new HashMap<>();
+
+    private final IdTransform types = new IdTransform(true, true), predicates = new IdTransform(false, true);
+    private final IdTransform values = new IdTransform(true, false)
+    {
+        @Override public Node map(Subject subject)
+        {
+            return subjectNode(subject);
+        }
+
+        @Override public Node map(InlineFilter inlineFilter)
+        {
+            return Var.alloc(inlineFilter.variable().name());
+        }
+    };
+    private final Jrql.Transform<String> datatypes = new Jrql.Transform<String>()
+    {
+        @Override public String map(Variable variable)
+        {
+            throw new IllegalArgumentException("Variable found as literal datatype");
+        }
+
+        @Override public String map(Name name)
+        {
+            return context.expandIri(name.toString(), true, true);
+        }
+    };
+
+    JsonRqlJenaPatternBuilder(CompiledContext context)
+    {
+        this.context = context;
+    }
+
+    JsonRqlJenaPatternBuilder add(Subject subject)
+    {
+        addSubject(subject);
+        return this;
+    }
+
+    JsonRqlJenaPatternBuilder addAll(Collection<Subject> subjects)
+    {
+        subjects.forEach(this::addSubject);
+        return this;
+    }
+
+    /**
+     * Converts an identifier or literal to a node, as for a property value with no term definition
+     */
+    Node node(Value value)
+    {
+        if (value instanceof Subject || value instanceof InlineFilter)
+            throw new IllegalArgumentException("Expected an identifier or literal");
+
+        final Node node = valueNode(value, null);
+        if (node == null)
+            throw new IllegalArgumentException("Relative IRI cannot be converted to a node");
+        return node;
+    }
+
+    BasicPattern build()
+    {
+        final BasicPattern pattern = new BasicPattern();
+        triples.forEach(pattern::add);
+        return pattern;
+    }
+
+    /**
+     * Passes the triples added so far to the given consumer and forgets them, retaining only the mapping of
+     * blank node labels, so that subjects can be translated incrementally
+     */
+    void drainTo(Consumer<Triple> consumer)
+    {
+        triples.forEach(consumer);
+        triples.clear();
+    }
+
+    private void addSubject(Subject subject)
+    {
+        addProperties(subject, subjectNode(subject));
+    }
+
+    private Node subjectNode(Subject subject)
+    {
+        return subject.id().map(this::idNode).orElseGet(NodeFactory::createBlankNode);
+    }
+
+    private void addProperties(Subject subject, Node node)
+    {
+        subject.type().ifPresent(
+            type -> addTriple(node, RDF.Nodes.type, Jrql.map(type, types)));
+        subject.properties().forEach((key, values) -> {
+            final Term term = term(key);
+            if (term != null && term.isReverse())
+            {
+                final Node predicate = iriNode(term.iri());
+                values.forEach(value -> {
+                    if (value instanceof Literal)
+                        throw new IllegalArgumentException("Literal found as value of a reverse property");
+                    final Node object = valueNode(value, null);
+                    addTriple(object, predicate, node);
+                    addNested(value, object);
+                });
+            }
+            else
+            {
+                final Node predicate = Jrql.map(key, predicates);
+                if (term != null && term.container() == ContainerType.LIST)
+                    addTriple(node, predicate, listNode(values, term));
+                else
+                    values.forEach(value -> {
+                        final Node object = valueNode(value, term);
+                        addTriple(node, predicate, object);
+                        addNested(value, object);
+                    });
+            }
+        });
+    }
+
+    private Node valueNode(Value value, Term term)
+    {
+        // Only literals depend on the term, so other values share one transform
+        return value instanceof Literal ? literalNode((Literal)value, term) : Jrql.map(value, values);
+    }
+
+    private Node listNode(List<Value> values, Term term)
+    {
+        final Node head = values.isEmpty() ? RDF.Nodes.nil : createBlankNode();
+        Node item = head;
+        for (Iterator<Value> iter = values.iterator(); iter.hasNext(); )
+        {
+            final Value value = iter.next();
+            final Node rest = iter.hasNext() ? createBlankNode() : RDF.Nodes.nil;
+            final Node first = valueNode(value, term);
+            addTriple(item, RDF.Nodes.first, first);
+            addNested(value, first);
+            addTriple(item, RDF.Nodes.rest, rest);
+            item = rest;
+        }
+        return head;
+    }
+
+    private Node literalNode(Literal literal, Term term)
+    {
+        if (literal instanceof PrimitiveLiteral && (term == null || term.type() == null))
+            return primitiveNode((PrimitiveLiteral)literal);
+
+        final Object value = literal.value();
+        if (literal.type().isPresent() || literal.language().isPresent())
+        {
+            // Explicit value object, not subject to term coercion
+            return literalNode(value, literal.type().map(type -> Jrql.map(type, datatypes)).orElse(null),
+                literal.language().map(lang -> lang.toLowerCase(Locale.ROOT)).orElse(null));
+        }
+        final String type = term == null ? null : term.type();
+        if ("@id".equals(type))
+            return iriNode(context.expandIri(value.toString(), true, false));
+        else if ("@vocab".equals(type))
+            return iriNode(context.expandIri(value.toString(), true, true));
+        else if (type != null)
+            return literalNode(value, type, null);
+        else if (value instanceof String)
+            return literalNode(value, null, term != null && term.language() != null ?
+                term.language() : context.language().orElse(null));
+        else
+            return literalNode(value, null, null);
+    }
+
+    /**
+     * Typed nodes for uncoerced primitive literals, without boxing their values
+     */
+    private static Node primitiveNode(PrimitiveLiteral literal)
+    {
+        if (literal instanceof IntLiteral)
+            return NodeFactory.createLiteral(Integer.toString(((IntLiteral)literal).intValue()), XSDinteger);
+        else if (literal instanceof LongLiteral)
+            return NodeFactory.createLiteral(Long.toString(((LongLiteral)literal).longValue()), XSDinteger);
+        else if (literal instanceof DoubleLiteral)
+            return NodeFactory.createLiteral(doubleLexical(((DoubleLiteral)literal).doubleValue()), XSDdouble);
+        else if (literal instanceof BooleanLiteral)
+            return ((BooleanLiteral)literal).booleanValue() ? NodeConst.nodeTrue : NodeConst.nodeFalse;
+        else
+            return literalNode(literal.value(), null, null);
+    }
+
+    /**
+     * Lexical forms and default datatypes as per the JSON-LD to RDF algorithm
+     */
+    private static Node literalNode(Object value, String datatype, String language)
+    {
+        final String lexical;
+        if (value instanceof Boolean)
+        {
+            lexical = value.toString();
+            datatype = datatype == null ? XSDboolean.getURI() : datatype;
+        }
+        else if (value instanceof Double || value instanceof Float ||
+            (value instanceof Number && XSDdouble.getURI().equals(datatype)))
+        {
+            // A float will have been serialised to JSON and re-parsed as a double
+            final double number = value instanceof Float ?
+                Double.parseDouble(value.toString()) : ((Number)value).doubleValue();
+            lexical = XSDdecimal.getURI().equals(datatype) ? Double.toString(number) : doubleLexical(number);
+            datatype = datatype == null ? XSDdouble.getURI() : datatype;
+        }
+        else if (value instanceof BigDecimal && datatype == null)
+        {
+            // Written as a JSON number, so an integer unless it has a fraction or exponent
+            final BigDecimal number = (BigDecimal)value;
+            lexical = number.scale() == 0 ? number.toPlainString() : doubleLexical(number.doubleValue());
+            datatype = number.scale() == 0 ? XSDinteger.getURI() : XSDdouble.getURI();
+        }
+        else if (value instanceof BigDecimal)
+        {
+            lexical = ((BigDecimal)value).toPlainString();
+        }
+        else if (value instanceof Number)
+        {
+            lexical = value.toString();
+            datatype = datatype == null ? XSDinteger.getURI() : datatype;
+        }
+        else if (language != null)
+        {
+            return NodeFactory.createLiteral(value.toString(), language);
+        }
+        else
+        {
+            lexical = value.toString();
+        }
+        return datatype == null ? NodeFactory.createLiteral(lexical) :
+            NodeFactory.createLiteral(lexical, NodeFactory.getType(datatype));
+    }
+
+    private Node idNode(Id id)
+    {
+        return Jrql.map(id, values);
+    }
+
+    private Node iriNode(String iri)
+    {
+        if (iri == null || isRelative(iri))
+            return null;
+        else if (iri.startsWith("_:"))
+            return blankNodes.computeIfAbsent(iri, label -> createBlankNode());
+        else
+            return createURI(iri);
+    }
+
+    private void addTriple(Node subject, Node predicate, Node object)
+    {
+        // Relative IRIs are dropped, as in JSON-LD
+        if (subject != null && predicate != null && object != null && !predicate.isBlank())
+            triples.add(new Triple(subject, predicate, object));
+    }
+
+    private void addNested(Value value, Node node)
+    {
+        // A nested subject's own properties follow the triple that refers to it
+        if (value instanceof Subject)
+            addProperties((Subject)value, node);
+    }
+
+    private Term term(Id key)
+    {
+        return key instanceof Name ? context.term(key.toString()) : null;
+    }
+
+    static String doubleLexical(double number)
+    {
+        return Double.isFinite(number) ? DOUBLE_FORMAT.get().format(number) : Double.toString(number);
+    }
+
+    private static boolean isRelative(String iri)
+    {
+        return iri.indexOf(':') < 0;
+    }
+
+    private class IdTransform implements Jrql.Transform<Node>
+    {
+        final boolean relative, vocab;
+
+        IdTransform(boolean relative, boolean vocab)
+        {
+            this.relative = relative;
+            this.vocab = vocab;
+        }
+
+        @Override public Node map(Variable variable)
+        {
+            return Var.alloc(variable.name());
+        }
+
+        @Override public Node map(Name name)
+        {
+            return iriNode(context.expandIri(name.toString(), relative, vocab));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.sparql.core.Prologue;
+import org.jsonrql.JsonRqlModule;
+import org.jsonrql.Query;
+import org.jsonrql.Read;
+import org.jsonrql.Update;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads newline-delimited <b>json-rql</b> queries and updates, and parses and translates them to SPARQL in
+ * parallel. Translations are passed to a sink on the calling thread, either in input order or in order of
+ * completion.
+ * <p>
+ * At most a fixed number of lines are in flight at once, so a slow sink holds back reading. The first line
+ * that fails to parse or translate aborts the run.
+ */
+public class JsonRqlJenaPipeline
+{
+    private final ExecutorService executor;
+    private final int maximumInFlight;
+    private final boolean ordered;
+
+    public JsonRqlJenaPipeline(ExecutorService executor, int maximumInFlight, boolean ordered)
+    {
+        if (maximumInFlight < 1)
+            throw new IllegalArgumentException("At least one line must be in flight");
+
+        this.executor = executor;
+        this.maximumInFlight = maximumInFlight;
+        this.ordered = ordered;
+    }
+
+    public JsonRqlJenaPipeline(boolean ordered)
+    {
+        this(ForkJoinPool.commonPool(), 4 * ForkJoinPool.getCommonPoolParallelism(), ordered);
+    }
+
+    /**
+     * Reads a file of newline-delimited json-rql, memory-mapped
+     */
+    public void run(Path ndjson, Consumer<? super Prologue> sink) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(ndjson, READ))
+        {
+            final Run run = new Run(sink);
+            final long size = channel.size();
+            for (long position = 0; position < size; )
+            {
+                final long regionSize = Math.min(size - position, Integer.MAX_VALUE);
+                final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+                int start = 0;
+                for (int i = 0; i < regionSize; i++)
+                {
+                    if (region.get(i) == '\n')
+                    {
+                        run.submit(region, start, i);
+                        start = i + 1;
+                    }
+                }
+                if (position + regionSize == size)
+                {
+                    run.submit(region, start, (int)regionSize);
+                    start = (int)regionSize;
+                }
+                else if (start == 0)
+                {
+                    throw new IOException("Line too long to map");
+                }
+                // Any partial line at the end of the region is re-mapped with the next
+                position += start;
+            }
+            run.complete();
+        }
+    }
+
+    public void run(InputStream ndjson, Consumer<? super Prologue> sink) throws IOException
+    {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, UTF_8));
+        final Run run = new Run(sink);
+        for (String line = reader.readLine(); line != null; line = reader.readLine())
+        {
+            final String json = line;
+            if (!json.trim().isEmpty())
+                run.submit(() -> translate(JsonRqlModule.queryReader().readValue(json)));
+        }
+        run.complete();
+    }
+
+    private static Prologue translate(Query<?> jrql)
+    {
+        if (jrql instanceof Read)
+            return JsonRqlJena.asSparql((Read<?>)jrql);
+        else
+            return JsonRqlJena.asSparql((Update)jrql);
+    }
+
+    private class Run
+    {
+        final Consumer<? super Prologue> sink;
+        final Deque<Future<Prologue>> inFlight = new ArrayDeque<>();
+        final CompletionService<Prologue> completion = new ExecutorCompletionService<>(executor);
+
+        Run(Consumer<? super Prologue> sink)
+        {
+            this.sink = sink;
+        }
+
+        void submit(MappedByteBuffer region, int start, int end) throws IOException
+        {
+            if (isBlank(region, start, end))
+                return;
+
+            submit(() -> {
+                // Copy the line out of the mapped region on the worker thread
+                final byte[] json = new byte[end - start];
+                for (int i = start; i < end; i++)
+                    json[i - start] = region.get(i);
+                return translate(JsonRqlModule.queryReader().readValue(json));
+            });
+        }
+
+        void submit(Callable<Prologue> task) throws IOException
+        {
+            if (inFlight.size() >= maximumInFlight)
+                sinkNext();
+            // The completion queue is only used when out-of-order completion is allowed
+            inFlight.add(ordered ? executor.submit(task) : completion.submit(task));
+        }
+
+        void complete() throws IOException
+        {
+            while (!inFlight.isEmpty())
+                sinkNext();
+        }
+
+        private void sinkNext() throws IOException
+        {
+            try
+            {
+                final Future<Prologue> next = ordered ? inFlight.remove() : completion.take();
+                if (!ordered)
+                    inFlight.remove(next);
+                sink.accept(next.get());
+            }
+            catch (InterruptedException e)
+            {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            catch (ExecutionException e)
+            {
+                cancel();
+                if (e.getCause() instanceof IOException)
+                    throw (IOException)e.getCause();
+                else if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException)e.getCause();
+                else if (e.getCause() instanceof Error)
+                    throw (Error)e.getCause();
+                else
+                    throw new IOException(e.getCause());
+            }
+        }
+
+        private void cancel()
+        {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+        }
+    }
+
+    private static boolean isBlank(MappedByteBuffer region, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+            if (!Character.isWhitespace(region.get(i)))
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+import org.apache.jena.sparql.syntax.syntaxtransform.UpdateTransformOps;
+import org.apache.jena.update.UpdateRequest;
+import org.jsonrql.Read;
+import org.jsonrql.Value;
+import org.jsonrql.Variable;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static java.util.Collections.singletonMap;
+import static org.jsonrql.Variable.var;
+
+/**
+ * A <b>json-rql</b> query or update translated once to Jena, for repeated use with different variable
+ * bindings. Binding substitutes nodes for variables in the translation, without translating the
+ * <b>json-rql</b> again.
+ * <p>
+ * Binding values are converted to nodes using the context of the original query. Parts of the
+ * translation not affected by a binding may be shared between the results of binding.
+ *
+ * @param <T> the Jena type of the translation, a {@link Query} or an {@link UpdateRequest}
+ */
+public final class JsonRqlJenaPrepared<T>
+{
+    private final T template;
+    private final CompiledContext context;
+    private final BiFunction<T, Map<Var, Node>, T> substitute;
+
+    static JsonRqlJenaPrepared<Query> prepare(Read<?> jrql)
+    {
+        final JsonRqlJenaQueryBuilder builder = new JsonRqlJenaQueryBuilder(jrql);
+        return new JsonRqlJenaPrepared<>(builder.build(), builder.context, QueryTransformOps::transform);
+    }
+
+    static JsonRqlJenaPrepared<UpdateRequest> prepare(org.jsonrql.Update jrql)
+    {
+        final JsonRqlJenaUpdateBuilder builder = new JsonRqlJenaUpdateBuilder(jrql);
+        return new JsonRqlJenaPrepared<>(builder.build(), builder.context, (update, substitutions) ->
+            JsonRqlJenaCache.copy(UpdateTransformOps.transform(update, substitutions)));
+    }
+
+    private JsonRqlJenaPrepared(T template, CompiledContext context, BiFunction<T, Map<Var, Node>, T> substitute)
+    {
+        this.template = template;
+        this.context = context;
+        this.substitute = substitute;
+    }
+
+    public T bind(Map<Variable, ? extends Value> bindings)
+    {
+        final JsonRqlJenaPatternBuilder nodes = new JsonRqlJenaPatternBuilder(context);
+        final Map<Var, Node> substitutions = new HashMap<>();
+        bindings.forEach((variable, value) -> substitutions.put(Var.alloc(variable.name()), nodes.node(value)));
+        return substitute.apply(template, substitutions);
+    }
+
+    public T bind(Variable variable, Value value)
+    {
+        return bind(singletonMap(variable, value));
+    }
+
+    public T bind(String variable, Value value)
+    {
+        return bind(var(variable.startsWith("?") ? variable.substring(1) : variable), value);
+    }
+}
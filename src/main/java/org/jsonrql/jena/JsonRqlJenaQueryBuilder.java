@@ -8,18 +8,14 @@ package org.jsonrql.jena;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
-import org.apache.jena.sparql.sse.SSE;
 import org.apache.jena.sparql.syntax.Template;
 import org.jsonrql.*;
-import org.jsonrql.jsonld.JsonLd;
 
 import java.util.List;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
 import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.apache.jena.graph.NodeFactory.createVariable;
-import static org.jsonrql.jena.JsonRqlJena.asExpr;
 import static org.jsonrql.jena.JsonRqlJena.asPattern;
 
 public class JsonRqlJenaQueryBuilder extends JsonRqlJenaBuilder<Query>
@@ -81,8 +77,7 @@ public class JsonRqlJenaQueryBuilder extends JsonRqlJenaBuilder<Query>
     private void addConstruct(List<Subject> construct)
     {
         query.setQueryConstructType();
-        query.setConstructTemplate(new Template(asPattern(
-            construct.stream().map(JsonLd::asGraph).collect(toList()), ctx)));
+        query.setConstructTemplate(new Template(asPattern(construct, context)));
     }
 
     private void addDescribe(List<Id> describe)
@@ -97,13 +92,13 @@ public class JsonRqlJenaQueryBuilder extends JsonRqlJenaBuilder<Query>
 
             @Override public Node map(Name name)
             {
-                return createURI(jrql.context().resolve(name).toString());
+                return createURI(context.expandIri(name.toString(), true, false));
             }
         }))));
     }
 
     public void setOrderBy(List<Expression> orderBy)
     {
-        orderBy.forEach(e -> query.addOrderBy(SSE.parseExpr(asExpr(e), prefixes), -2/*TODO*/));
+        orderBy.forEach(e -> query.addOrderBy(exprs.expr(e), Query.ORDER_DEFAULT));
     }
 }
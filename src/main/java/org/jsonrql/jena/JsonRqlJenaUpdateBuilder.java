@@ -12,11 +12,11 @@ import org.apache.jena.update.Update;
 import org.apache.jena.update.UpdateFactory;
 import org.apache.jena.update.UpdateRequest;
 import org.jsonrql.Subject;
+import org.jsonrql.jsonld.CompiledContext;
 
 import java.util.List;
 
 import static org.jsonrql.jena.JsonRqlJena.asPattern;
-import static org.jsonrql.jsonld.JsonLd.asGraph;
 
 public class JsonRqlJenaUpdateBuilder extends JsonRqlJenaBuilder<UpdateRequest>
 {
@@ -30,7 +30,19 @@ public class JsonRqlJenaUpdateBuilder extends JsonRqlJenaBuilder<UpdateRequest>
         this.jrqlUpdate = jrqlUpdate;
     }
 
+    JsonRqlJenaUpdateBuilder(org.jsonrql.Update jrqlUpdate, CompiledContext context)
+    {
+        super(jrqlUpdate, context);
+        this.jrqlUpdate = jrqlUpdate;
+    }
+
     @Override public UpdateRequest build()
+    {
+        updateRequest.add(buildUpdate());
+        return updateRequest;
+    }
+
+    Update buildUpdate()
     {
         final Update update;
         final QuadAcc insert, delete;
@@ -55,13 +67,11 @@ public class JsonRqlJenaUpdateBuilder extends JsonRqlJenaBuilder<UpdateRequest>
 
         jrqlUpdate.delete().ifPresent(subjects -> accTriples(subjects, delete));
         jrqlUpdate.insert().ifPresent(subjects -> accTriples(subjects, insert));
-
-        updateRequest.add(update);
-        return updateRequest;
+        return update;
     }
 
     private void accTriples(List<Subject> subjects, QuadAcc triples)
     {
-        subjects.forEach(subject -> asPattern(asGraph(subject), ctx).forEach(triples::addTriple));
+        asPattern(subjects, context).forEach(triples::addTriple);
     }
 }
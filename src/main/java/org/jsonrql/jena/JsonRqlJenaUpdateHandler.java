@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jena;
+
+import org.apache.jena.graph.Triple;
+import org.jsonrql.Context;
+import org.jsonrql.Pattern;
+import org.jsonrql.Subject;
+import org.jsonrql.UpdateReader;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Translates the subjects of a streamed <b>json-rql</b> update to Jena triples as each subject is read,
+ * for bulk loading with memory bounded by one subject.
+ * <p>
+ * Blank node labels are consistent across all the subjects of the update. Updates with a non-empty
+ * <code>@where</code> clause cannot be translated incrementally, and are rejected, as are subjects containing
+ * variables, and deleted subjects containing blank nodes, which as data would match nothing.
+ *
+ * @see UpdateReader
+ */
+public final class JsonRqlJenaUpdateHandler implements UpdateReader.Handler
+{
+    private final Consumer<Triple> delete, insert;
+    private JsonRqlJenaPatternBuilder builder;
+
+    public JsonRqlJenaUpdateHandler(Consumer<Triple> delete, Consumer<Triple> insert)
+    {
+        this.delete = delete;
+        this.insert = insert;
+        this.builder = new JsonRqlJenaPatternBuilder(CompiledContext.compile(Context.context()));
+    }
+
+    @Override public void context(Context context)
+    {
+        this.builder = new JsonRqlJenaPatternBuilder(CompiledContext.compile(context));
+    }
+
+    @Override public void delete(Subject subject)
+    {
+        add(subject, false, delete);
+    }
+
+    @Override public void insert(Subject subject)
+    {
+        add(subject, true, insert);
+    }
+
+    @Override public void where(List<Pattern> where)
+    {
+        if (!where.isEmpty())
+            throw new IllegalArgumentException("Update with a where clause cannot be translated incrementally");
+    }
+
+    /**
+     * Checks all the triples of the subject before passing any of them on, so that a rejected subject is not
+     * partially loaded
+     */
+    private void add(Subject subject, boolean allowBlank, Consumer<Triple> consumer)
+    {
+        final List<Triple> triples = new ArrayList<>();
+        builder.add(subject).drainTo(triples::add);
+        for (Triple triple : triples)
+        {
+            if (!triple.isConcrete())
+                throw new IllegalArgumentException("Update data cannot contain variables: " + triple);
+            if (!allowBlank && (triple.getSubject().isBlank() || triple.getObject().isBlank()))
+                throw new IllegalArgumentException("Deleted data cannot contain blank nodes: " + triple);
+        }
+        triples.forEach(consumer);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.github.jsonldjava.utils.JsonLdUrl;
+import org.jsonrql.Context;
+import org.jsonrql.Context.ContainerType;
+import org.jsonrql.Context.TermDef;
+import org.jsonrql.LruCache;
+import org.jsonrql.Name;
+
+import java.util.*;
+
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A {@link Context} with all of its term definitions resolved up-front, for repeated expansion of terms and
+ * compact IRIs as per the JSON-LD 1.0 IRI expansion algorithm.
+ * <p>
+ * Compiled contexts are cached by structural equality of the source context, so the cost of compilation is
+ * paid once per distinct context in recent use. Expansions are memoised, so that once warm, expanding a term
+ * or compact IRI does not allocate. Both caches are bounded, evicting the least recently used entries.
+ */
+public final class CompiledContext
+{
+    private static final int MAX_CACHED_CONTEXTS = 1024, MAX_MEMOISED_IRIS = 4096;
+    private static final LruCache<Context, CompiledContext> CACHE = new LruCache<>(MAX_CACHED_CONTEXTS);
+    private static final String NULL_IRI = new String(); // Marker for memoised null expansions
+    private static final Term NULL_TERM = new Term(null, false, null, null, null);
+
+    private final Context context;
+    private final String base, vocab, language;
+    private final Map<String, Term> terms = new HashMap<>();
+    private final PrefixTrie prefixTrie = new PrefixTrie();
+    private final Map<String, String> prefixes;
+    @SuppressWarnings("unchecked")
+    private final LruCache<String, String>[] memos = (LruCache<String, String>[])new LruCache<?, ?>[4];
+
+    /**
+     * A resolved term definition.
+     */
+    public static final class Term
+    {
+        private final String iri;
+        private final boolean reverse;
+        private final String type;
+        private final String language;
+        private final ContainerType container;
+
+        private Term(String iri, boolean reverse, String type, String language, ContainerType container)
+        {
+            this.iri = iri;
+            this.reverse = reverse;
+            this.type = type;
+            this.language = language;
+            this.container = container;
+        }
+
+        /**
+         * @return the absolute IRI of the term, or of the reverse property if {@link #isReverse()};
+         * <code>null</code> if the term is explicitly mapped to <code>null</code>
+         */
+        public String iri()
+        {
+            return iri;
+        }
+
+        public boolean isReverse()
+        {
+            return reverse;
+        }
+
+        /**
+         * @return the expanded type coercion IRI, or one of the keywords <code>@id</code> and <code>@vocab</code>
+         */
+        public String type()
+        {
+            return type;
+        }
+
+        /**
+         * @return the lower-cased default language of the term, which overrides any context default
+         */
+        public String language()
+        {
+            return language;
+        }
+
+        public ContainerType container()
+        {
+            return container;
+        }
+    }
+
+    public static CompiledContext compile(Context context)
+    {
+        return CACHE.computeIfAbsent(context, CompiledContext::new);
+    }
+
+    private CompiledContext(Context context)
+    {
+        this.context = context;
+        this.base = context.base().map(Name::toString).orElse(null);
+        this.vocab = context.vocab().map(Name::toString).orElse(null);
+        this.language = context.language().map(lang -> lang.toLowerCase(Locale.ROOT)).orElse(null);
+
+        final Set<String> defining = new HashSet<>();
+        context.names().keySet().forEach(name -> define(name.toString(), defining));
+        terms.forEach((name, term) -> {
+            if (term.iri != null && !term.reverse)
+                prefixTrie.put(name, term.iri);
+        });
+
+        final Map<String, String> prefixes = new HashMap<>();
+        context.names().forEach((name, termDef) -> {
+            if (termDef != null && termDef.id().isPresent())
+                prefixes.put(name.toString(), termDef.id().get().toString());
+        });
+        if (vocab != null)
+            prefixes.put("", vocab);
+        this.prefixes = unmodifiableMap(prefixes);
+
+        for (int i = 0; i < memos.length; i++)
+            memos[i] = new LruCache<>(MAX_MEMOISED_IRIS);
+    }
+
+    public Context context()
+    {
+        return context;
+    }
+
+    public Optional<String> base()
+    {
+        return Optional.ofNullable(base);
+    }
+
+    public Optional<String> vocab()
+    {
+        return Optional.ofNullable(vocab);
+    }
+
+    /**
+     * @return the lower-cased default language of the context
+     */
+    public Optional<String> language()
+    {
+        return Optional.ofNullable(language);
+    }
+
+    /**
+     * @return the term definition for the given term, or <code>null</code> if the term is not defined
+     */
+    public Term term(String name)
+    {
+        return terms.get(name);
+    }
+
+    /**
+     * @return the namespace prefixes of the context, including the vocabulary as the empty prefix
+     * @see Context#prefixes()
+     */
+    public Map<String, String> prefixes()
+    {
+        return prefixes;
+    }
+
+    /**
+     * IRI expansion as per the JSON-LD 1.0 API.
+     *
+     * @param value    the term, compact IRI or IRI to expand
+     * @param relative whether the value is to be resolved against the base IRI, e.g. for node identifiers
+     * @param vocab    whether the value is relative to the vocabulary, e.g. for properties and types
+     * @return the expanded IRI, which may still be relative, or <code>null</code> if the value is a term
+     * explicitly mapped to <code>null</code>
+     */
+    public String expandIri(String value, boolean relative, boolean vocab)
+    {
+        if (value == null || value.startsWith("@"))
+            return value;
+
+        final LruCache<String, String> memo = memos[(relative ? 1 : 0) | (vocab ? 2 : 0)];
+        String iri = memo.get(value);
+        if (iri == null)
+        {
+            iri = doExpandIri(value, relative, vocab);
+            iri = memo.cache(value, iri == null ? NULL_IRI : iri);
+        }
+        return iri == NULL_IRI ? null : iri;
+    }
+
+    private String doExpandIri(String value, boolean relative, boolean vocab)
+    {
+        if (vocab)
+        {
+            final Term term = terms.get(value);
+            if (term != null)
+                return term.iri;
+        }
+
+        final int colon = value.indexOf(':');
+        if (colon >= 0)
+        {
+            if (colon == 1 && value.charAt(0) == '_' || value.startsWith("//", colon + 1))
+                return value;
+
+            final String prefixIri = prefixTrie.get(value, colon);
+            return prefixIri != null ? prefixIri + value.substring(colon + 1) : value;
+        }
+
+        if (vocab && this.vocab != null)
+            return this.vocab + value;
+        else if (relative)
+            return JsonLdUrl.resolve(base, value);
+        else
+            return value;
+    }
+
+    private Term define(String name, Set<String> defining)
+    {
+        Term term = terms.get(name);
+        if (term == null)
+        {
+            if (!defining.add(name))
+                throw new IllegalArgumentException(format("Cyclic IRI mapping for term \"%s\"", name));
+
+            final TermDef termDef = context.names().get(Name.name(name));
+            if (termDef == null)
+            {
+                term = NULL_TERM;
+            }
+            else if (termDef.reverse().isPresent())
+            {
+                term = new Term(termDef.reverse().get().id()
+                                    .map(id -> expandDefinition(id.toString(), defining)).orElse(null),
+                                true, type(termDef, defining), language(termDef), termDef.container().orElse(null));
+            }
+            else
+            {
+                final String iri = termDef.id().map(Name::toString).filter(id -> !id.equals(name))
+                    .map(id -> expandDefinition(id, defining))
+                    .orElseGet(() -> name.indexOf(':') >= 0 ? expandDefinition(name, defining)
+                        : vocab != null ? vocab + name : name);
+                term = new Term(iri, false, type(termDef, defining), language(termDef),
+                                termDef.container().orElse(null));
+            }
+            defining.remove(name);
+            terms.put(name, term);
+        }
+        return term;
+    }
+
+    private String type(TermDef termDef, Set<String> defining)
+    {
+        return termDef.type().map(type -> expandDefinition(type.toString(), defining)).orElse(null);
+    }
+
+    private static String language(TermDef termDef)
+    {
+        return termDef.language().map(lang -> lang.toLowerCase(Locale.ROOT)).orElse(null);
+    }
+
+    /**
+     * Expansion of IRIs in term definitions, which may refer to other terms not yet defined
+     */
+    private String expandDefinition(String value, Set<String> defining)
+    {
+        if (value.startsWith("@"))
+            return value;
+
+        if (context.names().containsKey(Name.name(value)))
+            return define(value, defining).iri;
+
+        final int colon = value.indexOf(':');
+        if (colon >= 0)
+        {
+            final String prefix = value.substring(0, colon), suffix = value.substring(colon + 1);
+            if ("_".equals(prefix) || suffix.startsWith("//"))
+                return value;
+            else if (context.names().containsKey(Name.name(prefix)))
+                return Optional.ofNullable(define(prefix, defining).iri).map(iri -> iri + suffix).orElse(value);
+            else
+                return value;
+        }
+        return vocab != null ? vocab + value : value;
+    }
+
+    /**
+     * A character trie of term names usable as prefixes of compact IRIs, searched up to the first colon of a
+     * compact IRI without taking a substring.
+     */
+    private static final class PrefixTrie
+    {
+        private char[] keys = new char[0];
+        private PrefixTrie[] children = new PrefixTrie[0];
+        private String iri;
+
+        void put(String prefix, String iri)
+        {
+            PrefixTrie node = this;
+            for (int i = 0; i < prefix.length(); i++)
+                node = node.child(prefix.charAt(i));
+            node.iri = iri;
+        }
+
+        String get(String value, int end)
+        {
+            PrefixTrie node = this;
+            for (int i = 0; i < end && node != null; i++)
+            {
+                final int index = Arrays.binarySearch(node.keys, value.charAt(i));
+                node = index < 0 ? null : node.children[index];
+            }
+            return node == null ? null : node.iri;
+        }
+
+        private PrefixTrie child(char key)
+        {
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0)
+            {
+                index = -index - 1;
+                final char[] newKeys = new char[keys.length + 1];
+                final PrefixTrie[] newChildren = new PrefixTrie[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                newKeys[index] = key;
+                newChildren[index] = new PrefixTrie();
+                keys = newKeys;
+                children = newChildren;
+            }
+            return children[index];
+        }
+    }
+}
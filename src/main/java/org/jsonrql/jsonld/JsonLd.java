@@ -5,7 +5,6 @@
 
 package org.jsonrql.jsonld;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jsonrql.*;
 
 import java.util.HashMap;
@@ -68,7 +67,7 @@ public interface JsonLd
             public Object map(Literal literal)
             {
                 if (literal.language().isPresent() || literal.type().isPresent())
-                    return new ObjectMapper().convertValue(literal, Map.class);
+                    return JsonRqlModule.mapper().convertValue(literal, Map.class);
                 else
                     return literal.value();
             }
@@ -84,12 +83,12 @@ public interface JsonLd
         });
     }
 
-    static Map asGraph(Subject po)
+    static Map<String, Object> asGraph(Subject po)
     {
         return asGraph(po, false);
     }
 
-    static Map asGraph(Subject po, boolean strict) throws IllegalArgumentException
+    static Map<String, Object> asGraph(Subject po, boolean strict) throws IllegalArgumentException
     {
         final Map<String, Object> graph = new HashMap<>();
         po.id().ifPresent(id -> graph.put("@id", asIRI(id)));
@@ -99,12 +98,12 @@ public interface JsonLd
         return graph;
     }
 
-    static Map asGraph(Group group)
+    static Map<String, Object> asGraph(Group group)
     {
         return asGraph(group, false);
     }
 
-    static Map asGraph(Group group, boolean strict) throws IllegalArgumentException
+    static Map<String, Object> asGraph(Group group, boolean strict) throws IllegalArgumentException
     {
         if (strict && group.filter().isPresent())
             throw new IllegalArgumentException("Filter found in conversion to JSON-LD");
@@ -112,7 +111,7 @@ public interface JsonLd
         if (strict && group.union().isPresent())
             throw new IllegalArgumentException("Union found in conversion to JSON-LD");
 
-        return group.graph().map(
+        return group.graph().<Map<String, Object>>map(
             graph -> singletonMap("@graph", graph.stream()
                 .map(subject -> JsonLd.asGraph(subject, strict)).collect(toList())))
             .orElse(emptyMap());
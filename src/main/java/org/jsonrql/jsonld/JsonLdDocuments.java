@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jsonrql.*;
+import org.jsonrql.Context.ContainerType;
+import org.jsonrql.jsonld.CompiledContext.Term;
+import org.jsonrql.internal.Solutions;
+
+import java.util.*;
+
+import static org.jsonrql.jsonld.JsonLdValues.*;
+
+/**
+ * An in-memory collection of JSON-LD documents, against which <b>json-rql</b> queries can be matched
+ * directly, without converting the documents to RDF.
+ * <p>
+ * The node objects of each document, including nested ones, are merged by identifier as for JSON-LD
+ * flattening, with blank node labels scoped to their document. Property values are held in expanded form,
+ * and can additionally be indexed by value for chosen properties, so that subject patterns with a known
+ * value for the property do not consider every node.
+ * <p>
+ * Results are as for the Jena translation of the query, executed against the RDF form of the documents,
+ * except that lists cannot be matched, only the operators supported by a
+ * {@link org.jsonrql.store.JsonRqlStore} can be used in in-line filters, and incomparable literals are simply
+ * unequal. A collection is not thread-safe.
+ */
+public final class JsonLdDocuments
+{
+    private final Map<String, Description> descriptions = new LinkedHashMap<>();
+    private final Map<String, Map<ObjectNode, Set<Description>>> indexes = new HashMap<>();
+    private int blankNodes;
+
+    /**
+     * The properties of one node, possibly gathered from several node objects
+     */
+    static final class Description
+    {
+        final ObjectNode id;
+        final Map<String, Set<ObjectNode>> properties = new LinkedHashMap<>();
+
+        private Description(ObjectNode id)
+        {
+            this.id = id;
+        }
+
+        Set<ObjectNode> values(String predicate)
+        {
+            return properties.getOrDefault(predicate, Collections.emptySet());
+        }
+    }
+
+    /**
+     * Adds a document using its own <code>@context</code>, if any
+     */
+    public JsonLdDocuments add(JsonNode document)
+    {
+        return add(document, Context.context());
+    }
+
+    /**
+     * @param document a node object, an array of node objects, or an object with a <code>@graph</code>
+     * @param context  the active context of the document, onto which any <code>@context</code> in it is merged
+     */
+    public JsonLdDocuments add(JsonNode document, Context context)
+    {
+        final Map<String, ObjectNode> blankNodes = new HashMap<>();
+        if (document.isArray())
+            document.forEach(object -> addObject(object, CompiledContext.compile(context), blankNodes));
+        else
+            addObject(document, CompiledContext.compile(context), blankNodes);
+        return this;
+    }
+
+    /**
+     * Indexes the values of the given property, including any values already added
+     *
+     * @param property the absolute IRI of the property, which may be <code>rdf:type</code>
+     */
+    public JsonLdDocuments index(String property)
+    {
+        indexes.computeIfAbsent(property, p -> {
+            final Map<ObjectNode, Set<Description>> index = new HashMap<>();
+            descriptions.values().forEach(description -> description.values(p).forEach(
+                value -> index.computeIfAbsent(value, v -> new LinkedHashSet<>()).add(description)));
+            return index;
+        });
+        return this;
+    }
+
+    /**
+     * @return the number of distinct nodes having properties
+     */
+    public int size()
+    {
+        return descriptions.size();
+    }
+
+    /**
+     * @param query a {@link Select} or {@link Distinct} query
+     * @return the solutions of the query, each mapping the bound selected variables to their values in
+     * expanded JSON-LD form, which must not be modified
+     */
+    public List<Map<String, JsonNode>> select(Read<?> query)
+    {
+        final List<Result> selected = Solutions.selected(query);
+        final JsonLdPlan plan = new JsonLdPlan(this, query.where(), CompiledContext.compile(query.context()));
+        return Solutions.select(query, selected, plan.variables(), plan.solutions(),
+                                (row, variable) -> value(plan, row, variable), VALUES);
+    }
+
+    Description description(ObjectNode id)
+    {
+        return descriptions.get(id.get("@id").asText());
+    }
+
+    Collection<Description> descriptions()
+    {
+        return descriptions.values();
+    }
+
+    /**
+     * @return the nodes having the given value for the property, or <code>null</code> if it is not indexed
+     */
+    Collection<Description> indexed(String property, ObjectNode value)
+    {
+        final Map<ObjectNode, Set<Description>> index = indexes.get(property);
+        return index == null ? null : index.getOrDefault(value, Collections.emptySet());
+    }
+
+    private static ObjectNode value(JsonLdPlan plan, ObjectNode[] row, String variable)
+    {
+        final int slot = plan.slot(variable);
+        return slot < 0 ? null : row[slot];
+    }
+
+    private void addObject(JsonNode object, CompiledContext context, Map<String, ObjectNode> blankNodes)
+    {
+        if (!object.isObject())
+            throw new IllegalArgumentException("Expected a JSON-LD node object");
+
+        if (object.has("@graph"))
+        {
+            // Named graphs are merged into the default graph
+            final CompiledContext local = local(object, context);
+            for (JsonNode node : object.get("@graph"))
+                addNode(node, local, blankNodes);
+            if (object.size() == (object.has("@context") ? 2 : 1))
+                return;
+        }
+        addNode(object, context, blankNodes);
+    }
+
+    /**
+     * @return the identifier of the node, or <code>null</code> if it is a relative IRI
+     */
+    private ObjectNode addNode(JsonNode object, CompiledContext activeContext, Map<String, ObjectNode> blankNodes)
+    {
+        if (!object.isObject())
+            throw new IllegalArgumentException("Expected a JSON-LD node object");
+
+        final CompiledContext context = local(object, activeContext);
+        final ObjectNode id = object.has("@id") ?
+            nodeId(context.expandIri(object.get("@id").asText(), true, false), blankNodes) :
+            blankNode(null, blankNodes);
+        object.fields().forEachRemaining(field -> {
+            final String key = field.getKey();
+            final JsonNode value = field.getValue();
+            if ("@type".equals(key))
+            {
+                for (JsonNode type : asArray(value))
+                    addValue(id, RDF_TYPE, nodeId(context.expandIri(type.asText(), true, true), blankNodes));
+            }
+            else if ("@reverse".equals(key))
+            {
+                value.fields().forEachRemaining(reverse -> {
+                    final String predicate = context.expandIri(reverse.getKey(), false, true);
+                    for (JsonNode subject : asArray(reverse.getValue()))
+                        addValue(addNode(subject, context, blankNodes), predicate, id);
+                });
+            }
+            else if (!key.startsWith("@"))
+            {
+                addProperty(id, key, value, context, blankNodes);
+            }
+        });
+        return id;
+    }
+
+    private void addProperty(ObjectNode id, String key, JsonNode value, CompiledContext context,
+                             Map<String, ObjectNode> blankNodes)
+    {
+        final Term term = context.term(key);
+        final String predicate = term != null ? term.iri() : context.expandIri(key, false, true);
+        if (predicate == null || isRelative(predicate))
+            return; // Dropped, as in JSON-LD expansion
+
+        final ContainerType container = term == null ? null : term.container();
+        if (container == ContainerType.LIST)
+            throw new IllegalArgumentException("Lists cannot be matched in documents");
+        final List<ObjectNode> objects = new ArrayList<>();
+        if (container == ContainerType.LANGUAGE && isMap(value))
+        {
+            value.fields().forEachRemaining(entry -> asArray(entry.getValue()).forEach(string -> {
+                if (!string.isNull())
+                    objects.add(literal(string, null, entry.getKey()));
+            }));
+        }
+        else if (container == ContainerType.INDEX && isMap(value))
+        {
+            value.forEach(indexed -> asArray(indexed).forEach(
+                item -> objects.add(value(item, term, context, blankNodes))));
+        }
+        else
+        {
+            asArray(value).forEach(item -> objects.add(value(item, term, context, blankNodes)));
+        }
+        for (ObjectNode object : objects)
+        {
+            if (term != null && term.isReverse())
+            {
+                if (object != null && isLiteral(object))
+                    throw new IllegalArgumentException("Literal found as value of a reverse property");
+                addValue(object, predicate, id);
+            }
+            else
+            {
+                addValue(id, predicate, object);
+            }
+        }
+    }
+
+    private ObjectNode value(JsonNode value, Term term, CompiledContext context, Map<String, ObjectNode> blankNodes)
+    {
+        if (value == null || value.isNull())
+        {
+            return null;
+        }
+        else if (value.isObject())
+        {
+            if (value.has("@list"))
+                throw new IllegalArgumentException("Lists cannot be matched in documents");
+            else if (!value.has("@value"))
+                return addNode(value, context, blankNodes);
+            else if (value.get("@value").isNull())
+                return null;
+            final String type = value.has("@type") ? context.expandIri(value.get("@type").asText(), true, true) : null;
+            return literal(value.get("@value"), type, value.has("@language") ? value.get("@language").asText() : null);
+        }
+        final String type = term == null ? null : term.type();
+        if ("@id".equals(type) && value.isTextual())
+            return nodeId(context.expandIri(value.asText(), true, false), blankNodes);
+        else if ("@vocab".equals(type) && value.isTextual())
+            return nodeId(context.expandIri(value.asText(), true, true), blankNodes);
+        else if (type != null && !type.startsWith("@"))
+            return literal(value, type, null);
+        else if (value.isTextual())
+            return literal(value, null, term != null && term.language() != null ?
+                term.language() : context.language().orElse(null));
+        else
+            return literal(value, null, null);
+    }
+
+    private ObjectNode nodeId(String iri, Map<String, ObjectNode> blankNodes)
+    {
+        if (iri == null || isRelative(iri))
+            return null;
+        else if (iri.startsWith("_:"))
+            return blankNode(iri, blankNodes);
+        else
+            return node(iri);
+    }
+
+    private ObjectNode blankNode(String label, Map<String, ObjectNode> blankNodes)
+    {
+        return label == null ? node("_:b" + this.blankNodes++) :
+            blankNodes.computeIfAbsent(label, l -> node("_:b" + this.blankNodes++));
+    }
+
+    private void addValue(ObjectNode subject, String predicate, ObjectNode object)
+    {
+        // Relative IRIs are dropped, as in JSON-LD
+        if (subject == null || predicate == null || object == null || predicate.startsWith("_:"))
+            return;
+
+        final Description description =
+            descriptions.computeIfAbsent(subject.get("@id").asText(), id -> new Description(subject));
+        if (description.properties.computeIfAbsent(predicate, p -> new LinkedHashSet<>()).add(object))
+        {
+            final Map<ObjectNode, Set<Description>> index = indexes.get(predicate);
+            if (index != null)
+                index.computeIfAbsent(object, value -> new LinkedHashSet<>()).add(description);
+        }
+    }
+
+    private static Iterable<JsonNode> asArray(JsonNode value)
+    {
+        if (value.isArray())
+            return value;
+        else if (value.isObject() && value.has("@set"))
+            return asArray(value.get("@set"));
+        else
+            return Collections.singletonList(value);
+    }
+
+    /**
+     * @return whether the value is a language or index map, rather than a value or node object
+     */
+    private static boolean isMap(JsonNode value)
+    {
+        return value.isObject() && !value.has("@value") && !value.has("@id") && !value.has("@set");
+    }
+
+    /**
+     * @return the active context merged with any local <code>@context</code> of the object, as for JSON-LD
+     * context processing, in which a <code>null</code> context resets the active context
+     */
+    private static CompiledContext local(JsonNode object, CompiledContext active)
+    {
+        if (!object.has("@context"))
+            return active;
+
+        Context context = active.context();
+        for (JsonNode local : object.get("@context").isArray() ? object.get("@context") :
+            Collections.singletonList(object.get("@context")))
+        {
+            if (local.isNull())
+                context = Context.context();
+            else
+                context = context.with(context(local));
+        }
+        return CompiledContext.compile(context);
+    }
+
+    private static Context context(JsonNode context)
+    {
+        try
+        {
+            return JsonRqlModule.mapper().treeToValue(context, Context.class);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalArgumentException("Unsupported document context", e);
+        }
+    }
+
+    private static boolean isRelative(String iri)
+    {
+        return iri.indexOf(':') < 0;
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jsonrql.*;
+import org.jsonrql.Context.ContainerType;
+import org.jsonrql.Literal.*;
+import org.jsonrql.jsonld.CompiledContext.Term;
+import org.jsonrql.jsonld.JsonLdDocuments.Description;
+import org.jsonrql.internal.Filter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
+import static org.jsonrql.jsonld.JsonLdValues.*;
+
+/**
+ * A <b>json-rql</b> where clause compiled for matching against the nodes of {@link JsonLdDocuments}.
+ * Variables, and blank nodes, which match like variables, are numbered as slots of a solution row, in which
+ * each slot holds an expanded JSON-LD value, or <code>null</code> if unbound.
+ * <p>
+ * Each group of patterns is matched as in its Jena translation: the subjects of the group, then each union,
+ * then the in-line filters of the subjects. A subject pattern is matched against the node it identifies, or
+ * else against the nodes found in an index by the value of one of its properties, or else against every
+ * node. Subjects that are already identified are matched first, and a filter is applied as soon as its
+ * variables are bound.
+ */
+final class JsonLdPlan
+{
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final JsonLdDocuments documents;
+    private final CompiledContext context;
+    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    private int slots;
+    private final Block root;
+
+    JsonLdPlan(JsonLdDocuments documents, List<? extends Pattern> where, CompiledContext context)
+    {
+        this.documents = documents;
+        this.context = context;
+        this.root = block(where);
+    }
+
+    /**
+     * @return the names of the variables in the where clause, in order of appearance
+     */
+    Set<String> variables()
+    {
+        return variables.keySet();
+    }
+
+    /**
+     * @return the slot of the named variable, or -1 if it does not appear in the where clause
+     */
+    int slot(String variable)
+    {
+        return variables.getOrDefault(variable, -1);
+    }
+
+    List<ObjectNode[]> solutions()
+    {
+        return evaluate(root, singletonList(new ObjectNode[slots]));
+    }
+
+    private static final class Block
+    {
+        final List<Match> subjects = new ArrayList<>();
+        final List<Filter<ObjectNode>> filters = new ArrayList<>();
+        final List<List<Block>> unions = new ArrayList<>();
+    }
+
+    /**
+     * A constant value, or a slot
+     */
+    private static final class Position
+    {
+        final ObjectNode constant;
+        final int slot;
+
+        Position(ObjectNode constant, int slot)
+        {
+            this.constant = constant;
+            this.slot = slot;
+        }
+
+        ObjectNode get(ObjectNode[] row)
+        {
+            return constant != null ? constant : row[slot];
+        }
+    }
+
+    /**
+     * A subject pattern, all of whose properties must be matched by one node
+     */
+    private static final class Match
+    {
+        final Position id;
+        final List<Property> properties = new ArrayList<>();
+
+        Match(Position id)
+        {
+            this.id = id;
+        }
+    }
+
+    private static final class Property
+    {
+        final Position predicate, object;
+        /**
+         * A pattern for the object, if it is a subject
+         */
+        final Match nested;
+
+        Property(Position predicate, Position object, Match nested)
+        {
+            this.predicate = predicate;
+            this.object = object;
+            this.nested = nested;
+        }
+    }
+
+    private Block block(List<? extends Pattern> where)
+    {
+        final Block block = new Block();
+        final Map<String, Integer> blankNodes = new HashMap<>();
+        for (Pattern pattern : where)
+        {
+            if (pattern instanceof Subject)
+            {
+                addSubject((Subject)pattern, block, blankNodes);
+            }
+            else if (pattern instanceof Group)
+            {
+                final Group group = (Group)pattern;
+                group.graph().ifPresent(subjects -> subjects.forEach(
+                    subject -> addSubject(subject, block, blankNodes)));
+                group.union().ifPresent(union -> {
+                    final List<Block> branches = new ArrayList<>();
+                    union.forEach(branch -> branches.add(block(singletonList(branch))));
+                    block.unions.add(branches);
+                });
+            }
+            // Sub-queries are not translated to Jena either
+        }
+        return block;
+    }
+
+    private void addSubject(Subject subject, Block block, Map<String, Integer> blankNodes)
+    {
+        final Match match = match(subject, block, blankNodes);
+        if (match != null)
+            block.subjects.add(match);
+    }
+
+    /**
+     * @return the compiled subject, or <code>null</code> if it has a relative identifier, in which case only
+     * its nested subjects are added to the block
+     */
+    private Match match(Subject subject, Block block, Map<String, Integer> blankNodes)
+    {
+        final Position id = subject.id().isPresent() ?
+            id(subject.id().get(), true, false, blankNodes) : new Position(null, slots++);
+        final Match match = new Match(id);
+        subject.type().ifPresent(type -> addProperty(
+            match, new Position(node(RDF_TYPE), -1), id(type, true, true, blankNodes), null, block));
+        subject.properties().forEach((key, values) -> {
+            final Term term = key instanceof Name ? context.term(key.toString()) : null;
+            if (term != null && (term.isReverse() || term.container() == ContainerType.LIST))
+                throw new IllegalArgumentException("Reverse properties and lists cannot be matched in documents");
+            final Position predicate = id(key, false, true, blankNodes);
+            for (Value value : values)
+            {
+                if (value instanceof Subject)
+                {
+                    final Match nested = match((Subject)value, block, blankNodes);
+                    if (nested != null)
+                        addProperty(match, predicate, nested.id, nested, block);
+                }
+                else if (value instanceof InlineFilter)
+                {
+                    final InlineFilter inlineFilter = (InlineFilter)value;
+                    addProperty(match, predicate, id(inlineFilter.variable(), true, false, blankNodes), null, block);
+                    addFilters(inlineFilter, block);
+                }
+                else
+                {
+                    final Position object = value instanceof Literal ?
+                        literal((Literal)value, term, blankNodes) : id((Id)value, true, false, blankNodes);
+                    addProperty(match, predicate, object, null, block);
+                }
+            }
+        });
+        if (id != null)
+            return match;
+        // As for Jena, the properties of a subject with a relative identifier are dropped, but not its nested
+        // subjects
+        match.properties.forEach(property -> {
+            if (property.nested != null)
+                block.subjects.add(property.nested);
+        });
+        return null;
+    }
+
+    private static void addProperty(Match match, Position predicate, Position object, Match nested, Block block)
+    {
+        // Relative IRIs are dropped, as in JSON-LD
+        if (predicate != null && object != null && (predicate.constant == null || !isBlank(predicate.constant)))
+            match.properties.add(new Property(predicate, object, nested));
+        else if (nested != null)
+            block.subjects.add(nested);
+    }
+
+    private void addFilters(InlineFilter inlineFilter, Block block)
+    {
+        inlineFilter.filters().forEach((operator, arguments) -> {
+            final int[] argSlots = new int[arguments.size() + 1];
+            final ObjectNode[] constants = new ObjectNode[arguments.size() + 1];
+            argSlots[0] = variable(inlineFilter.variable().name());
+            for (int i = 0; i < arguments.size(); i++)
+            {
+                final Expression argument = arguments.get(i);
+                if (argument instanceof Variable)
+                {
+                    argSlots[i + 1] = variable(((Variable)argument).name());
+                }
+                else
+                {
+                    final Position constant = argument instanceof Literal ?
+                        literal((Literal)argument, null, null) : id((Id)argument, true, false, null);
+                    if (constant == null)
+                        throw new IllegalArgumentException("Relative IRI cannot be used in a filter");
+                    argSlots[i + 1] = -1;
+                    constants[i + 1] = constant.constant;
+                }
+            }
+            block.filters.add(new Filter<>(operator, argSlots, constants, VALUES));
+        });
+    }
+
+    /**
+     * @return the position of an identifier, or <code>null</code> if it is a relative IRI
+     */
+    private Position id(Id id, boolean relative, boolean vocab, Map<String, Integer> blankNodes)
+    {
+        if (id instanceof Variable)
+            return new Position(null, variable(((Variable)id).name()));
+        else
+            return iri(context.expandIri(id.toString(), relative, vocab), blankNodes);
+    }
+
+    private Position iri(String iri, Map<String, Integer> blankNodes)
+    {
+        if (iri == null || iri.indexOf(':') < 0)
+            return null;
+        else if (iri.startsWith("_:") && blankNodes != null)
+            return new Position(null, blankNodes.computeIfAbsent(iri, label -> slots++));
+        else
+            return new Position(node(iri), -1);
+    }
+
+    private int variable(String variable)
+    {
+        final Integer slot = variables.get(variable);
+        if (slot != null)
+            return slot;
+        variables.put(variable, slots);
+        return slots++;
+    }
+
+    /**
+     * Literals as for their Jena translation, applying any coercion of the property term
+     */
+    private Position literal(Literal literal, Term term, Map<String, Integer> blankNodes)
+    {
+        final Object value = literal.value();
+        if (literal instanceof PrimitiveLiteral && (term == null || term.type() == null))
+        {
+            // Doubles in queries remain doubles, even without a fractional part
+            return new Position(JsonLdValues.literal(
+                json(value), literal instanceof DoubleLiteral ? XSD_DOUBLE : null, null), -1);
+        }
+        else if (literal.type().isPresent() || literal.language().isPresent())
+        {
+            // Explicit value object, not subject to term coercion
+            final Id type = literal.type().orElse(null);
+            if (type instanceof Variable)
+                throw new IllegalArgumentException("Variable found as literal datatype");
+            return new Position(JsonLdValues.literal(
+                json(value), type == null ? null : context.expandIri(type.toString(), true, true),
+                literal.language().orElse(null)), -1);
+        }
+        final String type = term == null ? null : term.type();
+        if ("@id".equals(type))
+            return iri(context.expandIri(value.toString(), true, false), blankNodes);
+        else if ("@vocab".equals(type))
+            return iri(context.expandIri(value.toString(), true, true), blankNodes);
+        else if (type != null)
+            return new Position(JsonLdValues.literal(json(value), type, null), -1);
+        else if (value instanceof String)
+            return new Position(JsonLdValues.literal(json(value), null, term != null && term.language() != null ?
+                term.language() : context.language().orElse(null)), -1);
+        else
+            return new Position(JsonLdValues.literal(json(value), null, null), -1);
+    }
+
+    private static JsonNode json(Object value)
+    {
+        if (value instanceof String)
+            return NODES.textNode((String)value);
+        else if (value instanceof Boolean)
+            return NODES.booleanNode((Boolean)value);
+        else if (value instanceof BigDecimal)
+            // As written to JSON, so an integer unless it has a fraction or exponent
+            return ((BigDecimal)value).scale() == 0 ?
+                NODES.numberNode(((BigDecimal)value).toBigInteger()) : NODES.numberNode((BigDecimal)value);
+        else if (value instanceof BigInteger)
+            return NODES.numberNode((BigInteger)value);
+        else if (value instanceof Double || value instanceof Float)
+            // A float will have been serialised to JSON and re-parsed as a double
+            return NODES.numberNode(Double.parseDouble(value.toString()));
+        else
+            return NODES.numberNode(((Number)value).longValue());
+    }
+
+    private List<ObjectNode[]> evaluate(Block block, List<ObjectNode[]> rows)
+    {
+        // Filters are scoped to the group, so only slots bound by its own subjects make them ready
+        final boolean[] bound = new boolean[slots];
+        final List<Filter<ObjectNode>> pending = new ArrayList<>(block.filters);
+        final List<Match> remaining = new ArrayList<>(block.subjects);
+        while (!remaining.isEmpty() && !rows.isEmpty())
+        {
+            final Match match = cheapest(remaining, rows.get(0));
+            remaining.remove(match);
+            final List<ObjectNode[]> matched = new ArrayList<>();
+            for (ObjectNode[] row : rows)
+                match(match, row, matched::add);
+            rows = matched;
+            bind(match, bound);
+
+            for (Iterator<Filter<ObjectNode>> filters = pending.iterator(); filters.hasNext(); )
+            {
+                final Filter<ObjectNode> filter = filters.next();
+                if (isReady(filter, bound))
+                {
+                    rows = filter(rows, filter);
+                    filters.remove();
+                }
+            }
+        }
+        for (List<Block> union : block.unions)
+        {
+            final List<ObjectNode[]> unioned = new ArrayList<>();
+            for (Block branch : union)
+                unioned.addAll(evaluate(branch, rows));
+            rows = unioned;
+        }
+        for (Filter<ObjectNode> filter : pending)
+            rows = filter(rows, filter);
+        return rows;
+    }
+
+    /**
+     * @return the subject pattern to match first: an identified one, or else one whose property values can
+     * be looked up in an index, or else the first
+     */
+    private Match cheapest(List<Match> matches, ObjectNode[] row)
+    {
+        Match indexed = null;
+        for (Match match : matches)
+        {
+            if (match.id.get(row) != null || match.properties.isEmpty())
+                return match;
+            else if (indexed == null && indexed(match, row) != null)
+                indexed = match;
+        }
+        return indexed != null ? indexed : matches.get(0);
+    }
+
+    private void match(Match match, ObjectNode[] row, Consumer<ObjectNode[]> sink)
+    {
+        // A subject without properties is not translated to any triples
+        if (match.properties.isEmpty())
+        {
+            sink.accept(row);
+            return;
+        }
+        final ObjectNode id = match.id.get(row);
+        if (id != null)
+        {
+            final Description description = isLiteral(id) ? null : documents.description(id);
+            if (description != null)
+                matchProperties(match, 0, description, row, sink);
+        }
+        else
+        {
+            final Collection<Description> indexed = indexed(match, row);
+            for (Description description : indexed != null ? indexed : documents.descriptions())
+            {
+                final ObjectNode[] extended = row.clone();
+                extended[match.id.slot] = description.id;
+                matchProperties(match, 0, description, extended, sink);
+            }
+        }
+    }
+
+    /**
+     * @return the nodes found in an index by the value of one of the properties, or <code>null</code>
+     */
+    private Collection<Description> indexed(Match match, ObjectNode[] row)
+    {
+        for (Property property : match.properties)
+        {
+            final ObjectNode predicate = property.predicate.get(row), object = property.object.get(row);
+            if (predicate != null && object != null && !isLiteral(predicate))
+            {
+                final Collection<Description> indexed = documents.indexed(predicate.get("@id").asText(), object);
+                if (indexed != null)
+                    return indexed;
+            }
+        }
+        return null;
+    }
+
+    private void matchProperties(Match match, int index, Description description, ObjectNode[] row,
+                                 Consumer<ObjectNode[]> sink)
+    {
+        if (index == match.properties.size())
+        {
+            sink.accept(row);
+            return;
+        }
+        final Property property = match.properties.get(index);
+        final ObjectNode predicate = property.predicate.get(row);
+        if (predicate != null)
+        {
+            if (!isLiteral(predicate))
+                matchValues(match, index, description, predicate.get("@id").asText(), row, sink);
+        }
+        else
+        {
+            for (String iri : description.properties.keySet())
+            {
+                final ObjectNode[] extended = row.clone();
+                extended[property.predicate.slot] = node(iri);
+                matchValues(match, index, description, iri, extended, sink);
+            }
+        }
+    }
+
+    private void matchValues(Match match, int index, Description description, String predicate, ObjectNode[] row,
+                             Consumer<ObjectNode[]> sink)
+    {
+        final Property property = match.properties.get(index);
+        final Set<ObjectNode> values = description.values(predicate);
+        final ObjectNode object = property.object.get(row);
+        if (object != null)
+        {
+            if (values.contains(object))
+                matchNested(match, index, description, row, sink);
+        }
+        else
+        {
+            for (ObjectNode value : values)
+            {
+                final ObjectNode[] extended = row.clone();
+                extended[property.object.slot] = value;
+                matchNested(match, index, description, extended, sink);
+            }
+        }
+    }
+
+    private void matchNested(Match match, int index, Description description, ObjectNode[] row,
+                             Consumer<ObjectNode[]> sink)
+    {
+        final Match nested = match.properties.get(index).nested;
+        if (nested != null)
+            match(nested, row, matched -> matchProperties(match, index + 1, description, matched, sink));
+        else
+            matchProperties(match, index + 1, description, row, sink);
+    }
+
+    private static void bind(Match match, boolean[] bound)
+    {
+        if (match.properties.isEmpty())
+            return; // Nothing is bound by a subject without properties
+        if (match.id.constant == null)
+            bound[match.id.slot] = true;
+        for (Property property : match.properties)
+        {
+            if (property.predicate.constant == null)
+                bound[property.predicate.slot] = true;
+            if (property.object.constant == null)
+                bound[property.object.slot] = true;
+            if (property.nested != null)
+                bind(property.nested, bound);
+        }
+    }
+
+    private static List<ObjectNode[]> filter(List<ObjectNode[]> rows, Filter<ObjectNode> filter)
+    {
+        final List<ObjectNode[]> filtered = new ArrayList<>();
+        for (ObjectNode[] row : rows)
+            if (filter.test(slot -> row[slot]))
+                filtered.add(row);
+        return filtered;
+    }
+
+    private static boolean isReady(Filter<ObjectNode> filter, boolean[] bound)
+    {
+        for (int slot : filter.slots())
+            if (slot >= 0 && !bound[slot])
+                return false;
+        return true;
+    }
+}
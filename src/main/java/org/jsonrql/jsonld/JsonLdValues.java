@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jsonrql.internal.Values;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
+
+/**
+ * Expanded JSON-LD values in a canonical form, so that two values are equal if and only if they would
+ * convert to the same RDF term. A node is <code>{"@id": iri}</code>, with blank nodes labelled
+ * <code>_:</code>. A literal is a value object, in which integers, doubles and booleans are native JSON
+ * values without a type, strings have no type, and other literals have a string value and a type.
+ */
+final class JsonLdValues
+{
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    static final String XSD_STRING = XSD + "string", XSD_INTEGER = XSD + "integer",
+        XSD_DOUBLE = XSD + "double", XSD_DECIMAL = XSD + "decimal", XSD_BOOLEAN = XSD + "boolean";
+    static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    private static final Set<String> NUMERIC_TYPES = new HashSet<>(Arrays.asList(
+        XSD_INTEGER, XSD_DOUBLE, XSD_DECIMAL, XSD + "float", XSD + "long", XSD + "int", XSD + "short",
+        XSD + "byte", XSD + "nonNegativeInteger", XSD + "nonPositiveInteger", XSD + "positiveInteger",
+        XSD + "negativeInteger", XSD + "unsignedLong", XSD + "unsignedInt", XSD + "unsignedShort",
+        XSD + "unsignedByte"));
+    private static final ThreadLocal<DecimalFormat> DOUBLE_FORMAT = ThreadLocal.withInitial(
+        () -> new DecimalFormat("0.0###############E0", DecimalFormatSymbols.getInstance(Locale.US)));
+
+    static final Values<ObjectNode> VALUES = new Values<ObjectNode>()
+    {
+        @Override public Integer compare(ObjectNode a, ObjectNode b)
+        {
+            return JsonLdValues.compare(a, b);
+        }
+
+        @Override public boolean isLiteral(ObjectNode term)
+        {
+            return JsonLdValues.isLiteral(term);
+        }
+
+        @Override public boolean isBlank(ObjectNode term)
+        {
+            return JsonLdValues.isBlank(term);
+        }
+
+        @Override public boolean isString(ObjectNode term)
+        {
+            return JsonLdValues.isString(term);
+        }
+
+        @Override public String lexical(ObjectNode term)
+        {
+            return JsonLdValues.isLiteral(term) ? term.get("@value").asText() : term.get("@id").asText();
+        }
+
+        @Override public String datatype(ObjectNode literal)
+        {
+            return JsonLdValues.datatype(literal);
+        }
+    };
+
+    private JsonLdValues()
+    {
+    }
+
+    static ObjectNode node(String iri)
+    {
+        return NODES.objectNode().put("@id", iri);
+    }
+
+    /**
+     * Literals as per the JSON-LD to RDF algorithm
+     *
+     * @param value    a JSON string, number or boolean
+     * @param datatype the expanded datatype IRI, or <code>null</code> for the default for the value
+     * @param language the language of a string, or <code>null</code>
+     */
+    static ObjectNode literal(JsonNode value, String datatype, String language)
+    {
+        if (datatype == null)
+        {
+            if (value.isTextual())
+                return language == null ? literal(value) :
+                    literal(value).put("@language", language.toLowerCase(Locale.ROOT));
+            else if (value.isIntegralNumber())
+                return literal(integer(value.bigIntegerValue()));
+            else if (value.isNumber())
+                // As for jsonld-java, which Jena uses, a number written with a fraction or exponent is a double
+                return literal(NODES.numberNode(value.doubleValue()));
+            else
+                return literal(value);
+        }
+        switch (datatype)
+        {
+            case XSD_STRING:
+                if (value.isTextual())
+                    return literal(value);
+                break;
+            case XSD_INTEGER:
+                if (value.isIntegralNumber())
+                    return literal(integer(value.bigIntegerValue()));
+                else if (value.isTextual() && value.asText().matches("[+-]?\\d+"))
+                    return literal(integer(new BigInteger(value.asText())));
+                break;
+            case XSD_DOUBLE:
+                if (value.isNumber())
+                    return literal(NODES.numberNode(value.doubleValue()));
+                else if (value.isTextual() && parseNumber(value.asText(), true) != null)
+                    return literal(NODES.numberNode(parseNumber(value.asText(), true).doubleValue()));
+                break;
+            case XSD_BOOLEAN:
+                if (value.isBoolean() || value.isTextual() && value.asText().matches("true|false"))
+                    return literal(NODES.booleanNode(value.asBoolean()));
+                break;
+        }
+        return literal(NODES.textNode(lexical(value, datatype))).put("@type", datatype);
+    }
+
+    static boolean isLiteral(ObjectNode value)
+    {
+        return value.has("@value");
+    }
+
+    static boolean isBlank(ObjectNode value)
+    {
+        return !isLiteral(value) && value.get("@id").asText().startsWith("_:");
+    }
+
+    /**
+     * @return whether the value is a simple or language-tagged string
+     */
+    static boolean isString(ObjectNode value)
+    {
+        return value != null && isLiteral(value) && value.get("@value").isTextual() && !value.has("@type");
+    }
+
+    /**
+     * @return the value comparison of two literals, or <code>null</code> if they are not comparable
+     */
+    static Integer compare(ObjectNode a, ObjectNode b)
+    {
+        if (a == null || b == null || !isLiteral(a) || !isLiteral(b))
+            return null;
+
+        final Number x = number(a), y = number(b);
+        if (x != null && y != null)
+        {
+            if (x instanceof Double || y instanceof Double)
+                return Double.compare(x.doubleValue(), y.doubleValue());
+            else
+                return ((BigDecimal)x).compareTo((BigDecimal)y);
+        }
+        final JsonNode p = a.get("@value"), q = b.get("@value");
+        if (p.isBoolean() && q.isBoolean())
+            return Boolean.compare(p.booleanValue(), q.booleanValue());
+        else if (isString(a) && isString(b) && a.path("@language").asText().equals(b.path("@language").asText()))
+            return p.textValue().compareTo(q.textValue());
+        else
+            return null;
+    }
+
+    private static ObjectNode literal(JsonNode value)
+    {
+        return NODES.objectNode().set("@value", value);
+    }
+
+    /**
+     * @return the narrowest integer node, as would be read from JSON, so that canonical values are equal to
+     * the same values parsed by Jackson
+     */
+    private static JsonNode integer(BigInteger value)
+    {
+        if (value.bitLength() < Integer.SIZE)
+            return NODES.numberNode(value.intValue());
+        else if (value.bitLength() < Long.SIZE)
+            return NODES.numberNode(value.longValue());
+        else
+            return NODES.numberNode(value);
+    }
+
+    private static String lexical(JsonNode value, String datatype)
+    {
+        if (value.isBigDecimal())
+            return value.decimalValue().toPlainString();
+        else if (value.isFloatingPointNumber() && XSD_DECIMAL.equals(datatype))
+            return Double.toString(value.doubleValue());
+        else if (value.isFloatingPointNumber() && Double.isFinite(value.doubleValue()))
+            return DOUBLE_FORMAT.get().format(value.doubleValue());
+        else
+            return value.asText();
+    }
+
+    /**
+     * @return the numeric value of a literal, as a {@link Double} or {@link BigDecimal}, or <code>null</code>
+     */
+    private static Number number(ObjectNode literal)
+    {
+        final JsonNode value = literal.get("@value");
+        if (value.isIntegralNumber())
+            return new BigDecimal(value.bigIntegerValue());
+        else if (value.isNumber())
+            return value.doubleValue();
+        else if (NUMERIC_TYPES.contains(literal.path("@type").asText()))
+            return parseNumber(value.asText(), literal.get("@type").asText().equals(XSD + "float"));
+        else
+            return null;
+    }
+
+    private static Number parseNumber(String lexical, boolean isDouble)
+    {
+        try
+        {
+            return isDouble ? (Number)Double.parseDouble(lexical.trim()) : new BigDecimal(lexical.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private static String datatype(ObjectNode literal)
+    {
+        final JsonNode value = literal.get("@value");
+        if (literal.has("@type"))
+            return literal.get("@type").asText();
+        else if (value.isIntegralNumber())
+            return XSD_INTEGER;
+        else if (value.isNumber())
+            return XSD_DOUBLE;
+        else if (value.isBoolean())
+            return XSD_BOOLEAN;
+        else
+            return XSD_STRING;
+    }
+}
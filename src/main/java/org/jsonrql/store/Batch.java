@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+/**
+ * Up to {@link #CAPACITY} solution rows, held as one column of term identifiers per slot, zero where unbound.
+ * Operators reuse their output batch for each call, so a batch is only valid until the next call.
+ */
+final class Batch
+{
+    static final int CAPACITY = 1024;
+
+    final int[][] columns;
+    int size;
+
+    Batch(int slots)
+    {
+        this.columns = new int[slots][CAPACITY];
+    }
+
+    boolean isFull()
+    {
+        return size == CAPACITY;
+    }
+
+    /**
+     * Sets this batch to the selected rows of another, a column at a time
+     *
+     * @param from      the batch to select from
+     * @param selection the row of the other batch for each row of this batch
+     * @param size      the number of rows selected
+     */
+    void gather(Batch from, int[] selection, int size)
+    {
+        for (int slot = 0; slot < columns.length; slot++)
+        {
+            final int[] source = from.columns[slot], target = columns[slot];
+            for (int row = 0; row < size; row++)
+                target[row] = source[selection[row]];
+        }
+        this.size = size;
+    }
+
+    Batch copy()
+    {
+        final Batch copy = new Batch(columns.length);
+        for (int slot = 0; slot < columns.length; slot++)
+            System.arraycopy(columns[slot], 0, copy.columns[slot], 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    int[] row(int row)
+    {
+        final int[] values = new int[columns.length];
+        for (int slot = 0; slot < columns.length; slot++)
+            values[slot] = columns[slot][row];
+        return values;
+    }
+}
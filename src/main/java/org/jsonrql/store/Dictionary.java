@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.graph.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Encodes RDF terms as small positive integers, so that they can be packed into index keys. Zero is never
+ * a term, and stands for an unbound value. Terms are never removed, so an identifier is stable for the life
+ * of the store.
+ */
+final class Dictionary
+{
+    static final int ID_BITS = 21, MASK = (1 << ID_BITS) - 1;
+    /**
+     * Leaves the top key in an index free, so that the end of any range can be computed without overflow
+     */
+    static final int MAX_ID = MASK - 1;
+
+    private final Map<Node, Integer> ids = new HashMap<>();
+    private final List<Node> terms = new ArrayList<>();
+
+    Dictionary()
+    {
+        terms.add(null);
+    }
+
+    /**
+     * @return the identifier of the term, or zero if it has not been encoded
+     */
+    int id(Node term)
+    {
+        final Integer id = ids.get(term);
+        return id == null ? 0 : id;
+    }
+
+    int encode(Node term)
+    {
+        final Integer id = ids.get(term);
+        if (id != null)
+            return id;
+
+        if (terms.size() > MAX_ID)
+            throw new IllegalArgumentException(format("Store cannot hold more than %d terms", MAX_ID));
+        terms.add(term);
+        ids.put(term, terms.size() - 1);
+        return terms.size() - 1;
+    }
+
+    Node term(int id)
+    {
+        return terms.get(id);
+    }
+}
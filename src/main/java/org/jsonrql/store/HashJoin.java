@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import java.util.Arrays;
+
+/**
+ * Joins solutions with a pattern by building a hash table of the pattern's triples, keyed on the variables
+ * bound in every solution, and probing it with each solution. The pattern's other variables must be unbound.
+ * The order of the solutions is preserved.
+ */
+final class HashJoin implements Operator
+{
+    private final Operator input;
+    private final Scan build;
+    /**
+     * The pattern's variables bound in the solutions, and the rest
+     */
+    private final int[] joinSlots, addedSlots;
+    private final Batch out;
+    private final int[] selection = new int[Batch.CAPACITY], matched = new int[Batch.CAPACITY];
+
+    /**
+     * The hash table, as the first entry of each bucket and the next entry after each entry, or -1
+     */
+    private int[] heads, chain;
+    /**
+     * The values of the join slots and of the added slots for each entry, by slot
+     */
+    private int[][] joined, added;
+
+    private Batch batch;
+    private int row, entry = -1;
+
+    HashJoin(Operator input, Scan build, int[] joinSlots, int[] addedSlots, int slots)
+    {
+        this.input = input;
+        this.build = build;
+        this.joinSlots = joinSlots;
+        this.addedSlots = addedSlots;
+        this.out = new Batch(slots);
+    }
+
+    @Override public Batch next()
+    {
+        if (heads == null)
+            build();
+
+        int size = 0;
+        while (size < Batch.CAPACITY)
+        {
+            if (entry >= 0)
+            {
+                if (joins(entry))
+                {
+                    selection[size] = row;
+                    matched[size++] = entry;
+                }
+                entry = chain[entry];
+            }
+            else if (batch != null && row + 1 < batch.size)
+            {
+                row++;
+                entry = heads[hash(batch.columns, joinSlots, row) & (heads.length - 1)];
+            }
+            else if (size > 0)
+            {
+                break; // The input batch must be gathered before it is reused
+            }
+            else if ((batch = input.next()) != null)
+            {
+                row = -1;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        out.gather(batch, selection, size);
+        for (int i = 0; i < addedSlots.length; i++)
+        {
+            final int[] source = added[i], target = out.columns[addedSlots[i]];
+            for (int j = 0; j < size; j++)
+                target[j] = source[matched[j]];
+        }
+        return out;
+    }
+
+    private boolean joins(int entry)
+    {
+        for (int i = 0; i < joinSlots.length; i++)
+            if (joined[i][entry] != batch.columns[joinSlots[i]][row])
+                return false;
+        return true;
+    }
+
+    private void build()
+    {
+        joined = new int[joinSlots.length][Batch.CAPACITY];
+        added = new int[addedSlots.length][Batch.CAPACITY];
+        int entries = 0;
+        for (Batch scanned = build.next(); scanned != null; scanned = build.next())
+        {
+            if (entries + scanned.size > joined[0].length)
+            {
+                final int capacity = Math.max(entries + scanned.size, 2 * joined[0].length);
+                grow(joined, capacity);
+                grow(added, capacity);
+            }
+            copy(scanned, joinSlots, joined, entries);
+            copy(scanned, addedSlots, added, entries);
+            entries += scanned.size;
+        }
+        heads = new int[Integer.highestOneBit(Math.max(entries, 1)) * 2];
+        Arrays.fill(heads, -1);
+        chain = new int[entries];
+        // Entries are chained in reverse so that each bucket is in scan order
+        for (int entry = entries - 1; entry >= 0; entry--)
+        {
+            final int bucket = hash(joined, null, entry) & (heads.length - 1);
+            chain[entry] = heads[bucket];
+            heads[bucket] = entry;
+        }
+    }
+
+    private static void grow(int[][] columns, int capacity)
+    {
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = Arrays.copyOf(columns[i], capacity);
+    }
+
+    private static void copy(Batch from, int[] slots, int[][] to, int at)
+    {
+        for (int i = 0; i < slots.length; i++)
+            System.arraycopy(from.columns[slots[i]], 0, to[i], at, from.size);
+    }
+
+    /**
+     * @param slots the columns to hash, or <code>null</code> for all of them
+     */
+    private static int hash(int[][] columns, int[] slots, int row)
+    {
+        int hash = 0;
+        for (int i = 0, count = slots == null ? columns.length : slots.length; i < count; i++)
+            hash = (hash + columns[slots == null ? i : slots[i]][row]) * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+/**
+ * Joins solutions with a pattern by looking up the pattern in an index for each solution, with its bound
+ * variables substituted. Any variables may be bound, and which ones may differ between solutions. The order of
+ * the solutions is preserved.
+ */
+final class IndexJoin implements Operator
+{
+    private final Operator input;
+    private final JsonRqlStore store;
+    private final int[] pattern;
+    private final Batch out;
+    /**
+     * For each output row, its input row, and the index and bound prefix of its key
+     */
+    private final int[] selection = new int[Batch.CAPACITY], prefixLengths = new int[Batch.CAPACITY];
+    private final TripleIndex[] indexes = new TripleIndex[Batch.CAPACITY];
+    private final long[] keys = new long[Batch.CAPACITY];
+    private final int[] triple = new int[3];
+
+    private Batch batch;
+    private int row;
+    private TripleIndex index;
+    private int prefixLength, position, to;
+
+    IndexJoin(Operator input, JsonRqlStore store, int[] pattern, int slots)
+    {
+        this.input = input;
+        this.store = store;
+        this.pattern = pattern;
+        this.out = new Batch(slots);
+    }
+
+    @Override public Batch next()
+    {
+        int size = 0;
+        while (size < Batch.CAPACITY)
+        {
+            if (position < to)
+            {
+                final long key = index.get(position++);
+                if (Scan.matches(pattern, index, prefixLength, key))
+                {
+                    selection[size] = row;
+                    indexes[size] = index;
+                    prefixLengths[size] = prefixLength;
+                    keys[size++] = key;
+                }
+            }
+            else if (batch != null && row + 1 < batch.size)
+            {
+                row++;
+                probe();
+            }
+            else if (size > 0)
+            {
+                break; // The input batch must be gathered before it is reused
+            }
+            else if ((batch = input.next()) != null)
+            {
+                row = -1;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        out.gather(batch, selection, size);
+        for (int i = 0; i < size; i++)
+            Scan.write(pattern, indexes[i], prefixLengths[i], keys[i], out, i);
+        return out;
+    }
+
+    private void probe()
+    {
+        for (int i = 0; i < 3; i++)
+            triple[i] = pattern[i] > 0 ? pattern[i] : batch.columns[-pattern[i] - 1][row];
+        index = store.index(triple);
+        prefixLength = index.prefixLength(triple);
+        position = index.from(triple, prefixLength);
+        to = index.to(triple, prefixLength);
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.graph.*;
+import org.jsonrql.*;
+import org.jsonrql.internal.Solutions;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.jsonrql.jena.JsonRqlJena.asPattern;
+import static org.jsonrql.store.TripleIndex.*;
+
+/**
+ * An in-memory RDF store that executes <b>json-rql</b> queries and updates directly, without translating
+ * them to SPARQL, for small-to-medium embedded datasets where per-query setup would dominate.
+ * <p>
+ * Terms are dictionary-encoded, and the triples are held in subject-predicate-object,
+ * predicate-object-subject and object-subject-predicate orderings, each a sorted array of packed keys, so
+ * that the matches of any triple pattern are a contiguous range of one of them. Changes are merged into the
+ * orderings in bulk before the next read, so loading many triples is cheap but interleaving single changes
+ * with queries is not.
+ * <p>
+ * Results are as for the Jena translation of the query or update, executed against the same data, except
+ * that only comparison, <code>@in</code>, <code>@notin</code>, <code>@regex</code>, <code>@bound</code> and
+ * <code>@langmatches</code> operators can be used in in-line filters, and incomparable literals are simply
+ * unequal. A store is not thread-safe.
+ */
+public final class JsonRqlStore
+{
+    private final Dictionary dictionary = new Dictionary();
+    private final TripleIndex spo = new TripleIndex(SPO), pos = new TripleIndex(POS), osp = new TripleIndex(OSP);
+    /**
+     * Changes not yet merged into the orderings, by subject-predicate-object key, <code>true</code> if added
+     */
+    private final Map<Long, Boolean> changes = new HashMap<>();
+
+    public JsonRqlStore add(Triple triple)
+    {
+        checkConcrete(triple);
+        changes.put(key(dictionary.encode(triple.getSubject()),
+                        dictionary.encode(triple.getPredicate()),
+                        dictionary.encode(triple.getObject())), true);
+        return this;
+    }
+
+    public JsonRqlStore add(Graph graph)
+    {
+        graph.find().forEachRemaining(this::add);
+        return this;
+    }
+
+    public JsonRqlStore remove(Triple triple)
+    {
+        checkConcrete(triple);
+        final long key = storedKey(triple);
+        if (key != 0)
+            changes.put(key, false);
+        return this;
+    }
+
+    public boolean contains(Triple triple)
+    {
+        flush();
+        final long key = storedKey(triple);
+        return key != 0 && spo.contains(key);
+    }
+
+    public int size()
+    {
+        flush();
+        return spo.size();
+    }
+
+    /**
+     * @return a copy of the contents of the store
+     */
+    public Graph graph()
+    {
+        flush();
+        final Graph graph = Factory.createDefaultGraph();
+        for (int i = 0; i < spo.size(); i++)
+            graph.add(triple(spo.get(i)));
+        return graph;
+    }
+
+    /**
+     * @param query a {@link Select} or {@link Distinct} query
+     * @return the solutions of the query, each mapping the bound selected variables to their values
+     */
+    public List<Map<String, Node>> select(Read<?> query)
+    {
+        final List<Result> selected = Solutions.selected(query);
+        final Plan plan = plan(query.where(), CompiledContext.compile(query.context()));
+        return Solutions.select(query, selected, plan.variables(), plan.solutions(),
+                                (row, variable) -> value(plan, row, variable), Terms.VALUES);
+    }
+
+    public Graph construct(Construct query)
+    {
+        final CompiledContext context = CompiledContext.compile(query.context());
+        final Plan plan = plan(query.where(), context);
+        final List<Triple> template = asPattern(query.construct(), context).getList();
+        final Graph graph = Factory.createDefaultGraph();
+        solutions(plan, query).forEach(row -> instantiate(template, plan, row, new HashMap<>(), graph::add));
+        return graph;
+    }
+
+    /**
+     * Describes each resource as its triples, and those of any blank nodes it refers to, recursively
+     */
+    public Graph describe(Describe query)
+    {
+        final CompiledContext context = CompiledContext.compile(query.context());
+        final Plan plan = plan(query.where(), context);
+        final Set<Node> resources = new LinkedHashSet<>();
+        final List<int[]> solutions = solutions(plan, query).collect(toList());
+        for (Id id : query.describe())
+        {
+            if (id instanceof Variable)
+            {
+                for (int[] row : solutions)
+                {
+                    final Node value = value(plan, row, ((Variable)id).name());
+                    if (value != null)
+                        resources.add(value);
+                }
+            }
+            else
+            {
+                resources.add(NodeFactory.createURI(context.expandIri(id.toString(), true, false)));
+            }
+        }
+        final Graph graph = Factory.createDefaultGraph();
+        final Set<Integer> described = new HashSet<>();
+        resources.forEach(resource -> describe(dictionary.id(resource), described, graph));
+        return graph;
+    }
+
+    public void update(Update update)
+    {
+        final CompiledContext context = CompiledContext.compile(update.context());
+        final List<Triple> deletes = new ArrayList<>(), inserts = new ArrayList<>();
+        if (update.delete().isPresent() && !update.insert().isPresent() && update.where().isEmpty())
+        {
+            // The delete template is also the pattern, including its blank nodes
+            final Plan plan = plan(update.delete().get(), context);
+            for (int[] row : plan.solutions())
+                for (int[] pattern : plan.patterns())
+                    deletes.add(triple(key(term(pattern[0], row), term(pattern[1], row), term(pattern[2], row))));
+        }
+        else
+        {
+            final Plan plan = plan(update.where(), context);
+            final List<Triple> delete = update.delete()
+                .map(subjects -> asPattern(subjects, context).getList()).orElse(Collections.emptyList());
+            final List<Triple> insert = update.insert()
+                .map(subjects -> asPattern(subjects, context).getList()).orElse(Collections.emptyList());
+            for (int[] row : plan.solutions())
+            {
+                // Blank nodes cannot be deleted, and are created afresh for each solution
+                instantiate(delete, plan, row, null, deletes::add);
+                instantiate(insert, plan, row, new HashMap<>(), inserts::add);
+            }
+        }
+        deletes.forEach(this::remove);
+        inserts.forEach(this::add);
+    }
+
+    Dictionary dictionary()
+    {
+        return dictionary;
+    }
+
+    TripleIndex[] indexes()
+    {
+        return new TripleIndex[]{spo, pos, osp};
+    }
+
+    /**
+     * @param triple subject, predicate and object identifiers, zero where unbound
+     * @return the ordering in which the bound positions of the triple are a prefix
+     */
+    TripleIndex index(int[] triple)
+    {
+        if (triple[0] != 0)
+            return triple[2] != 0 && triple[1] == 0 ? osp : spo;
+        else if (triple[1] != 0)
+            return pos;
+        else
+            return triple[2] != 0 ? osp : spo;
+    }
+
+    private Plan plan(List<? extends Pattern> where, CompiledContext context)
+    {
+        flush();
+        return new Plan(this, where, context);
+    }
+
+    private Stream<int[]> solutions(Plan plan, Read<?> query)
+    {
+        return Solutions.slice(query, Solutions.ordered(
+            query, plan.solutions(), (row, variable) -> value(plan, row, variable), Terms.VALUES).stream());
+    }
+
+    private Node value(Plan plan, int[] row, String variable)
+    {
+        final int slot = plan.slot(variable);
+        return slot < 0 || row[slot] == 0 ? null : dictionary.term(row[slot]);
+    }
+
+    private void instantiate(List<Triple> template, Plan plan, int[] row, Map<Node, Node> blankNodes,
+                             Consumer<Triple> sink)
+    {
+        for (Triple triple : template)
+        {
+            final Node subject = instantiate(triple.getSubject(), plan, row, blankNodes),
+                predicate = instantiate(triple.getPredicate(), plan, row, blankNodes),
+                object = instantiate(triple.getObject(), plan, row, blankNodes);
+            // As in SPARQL, triples with unbound or ill-placed terms are skipped
+            if (subject != null && predicate != null && object != null && !subject.isLiteral() && predicate.isURI())
+                sink.accept(new Triple(subject, predicate, object));
+        }
+    }
+
+    private Node instantiate(Node node, Plan plan, int[] row, Map<Node, Node> blankNodes)
+    {
+        if (node.isVariable())
+            return value(plan, row, node.getName());
+        else if (node.isBlank())
+            return blankNodes == null ? null : blankNodes.computeIfAbsent(node, blank -> NodeFactory.createBlankNode());
+        else
+            return node;
+    }
+
+    private void describe(int resource, Set<Integer> described, Graph graph)
+    {
+        if (resource == 0 || !described.add(resource))
+            return;
+
+        final int[] triple = {resource, 0, 0};
+        for (int i = spo.from(triple, 1), to = spo.to(triple, 1); i < to; i++)
+        {
+            graph.add(triple(spo.get(i)));
+            final int object = component(spo.get(i), 2);
+            if (dictionary.term(object).isBlank())
+                describe(object, described, graph);
+        }
+    }
+
+    private int term(int position, int[] row)
+    {
+        return position > 0 ? position : row[-position - 1];
+    }
+
+    /**
+     * @return the subject-predicate-object key of the triple, or zero if any of its terms is not in the store
+     */
+    private long storedKey(Triple triple)
+    {
+        final int subject = dictionary.id(triple.getSubject()), predicate = dictionary.id(triple.getPredicate()),
+            object = dictionary.id(triple.getObject());
+        return subject == 0 || predicate == 0 || object == 0 ? 0 : key(subject, predicate, object);
+    }
+
+    private Triple triple(long key)
+    {
+        return new Triple(dictionary.term(component(key, 0)),
+                          dictionary.term(component(key, 1)),
+                          dictionary.term(component(key, 2)));
+    }
+
+    private void flush()
+    {
+        if (changes.isEmpty())
+            return;
+
+        final long[] removed = changes.entrySet().stream()
+            .filter(change -> !change.getValue()).mapToLong(Map.Entry::getKey).sorted().toArray();
+        final long[] added = changes.entrySet().stream()
+            .filter(Map.Entry::getValue).mapToLong(Map.Entry::getKey).sorted().toArray();
+        spo.apply(removed, added);
+        pos.apply(removed, added);
+        osp.apply(removed, added);
+        changes.clear();
+    }
+
+    private static void checkConcrete(Triple triple)
+    {
+        if (!triple.isConcrete())
+            throw new IllegalArgumentException("Only concrete triples can be stored");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+/**
+ * Joins solutions sorted by a variable with a pattern in which that variable follows the pattern's constants
+ * in the order of an index, by merging the solutions with the index. The pattern's other variables must be
+ * unbound. The order of the solutions is preserved.
+ */
+final class MergeJoin implements Operator
+{
+    private final Operator input;
+    private final int[] pattern;
+    private final int slot;
+    private final TripleIndex index;
+    /**
+     * The number of constants in the pattern, which is also the key component of the joined variable
+     */
+    private final int prefixLength, to;
+    private final int[] triple;
+    private final Batch out;
+    private final int[] selection = new int[Batch.CAPACITY];
+    private final long[] keys = new long[Batch.CAPACITY];
+
+    private Batch batch;
+    private int row, value, runFrom, runTo, position;
+
+    /**
+     * @param index an index in which the constants of the pattern are a prefix, followed by the slot
+     * @see #index(JsonRqlStore, int[], int)
+     */
+    MergeJoin(Operator input, TripleIndex index, int[] pattern, int slot, int slots)
+    {
+        this.input = input;
+        this.pattern = pattern;
+        this.slot = slot;
+        this.index = index;
+        this.triple = Scan.constants(pattern);
+        this.prefixLength = index.prefixLength(triple);
+        this.position = this.runFrom = this.runTo = index.from(triple, prefixLength);
+        this.to = index.to(triple, prefixLength);
+        this.out = new Batch(slots);
+    }
+
+    /**
+     * @return an index in which the constants of the pattern are a prefix, followed by the slot, or
+     * <code>null</code> if there is none
+     */
+    static TripleIndex index(JsonRqlStore store, int[] pattern, int slot)
+    {
+        int constants = 0;
+        for (int position : pattern)
+            if (position > 0)
+                constants++;
+        for (TripleIndex index : store.indexes())
+        {
+            boolean isPrefix = constants < 3;
+            for (int component = 0; component < constants && isPrefix; component++)
+                isPrefix = pattern[index.position(component)] > 0;
+            if (isPrefix && pattern[index.position(constants)] == -slot - 1)
+                return index;
+        }
+        return null;
+    }
+
+    @Override public Batch next()
+    {
+        int size = 0;
+        while (size < Batch.CAPACITY)
+        {
+            if (position < runTo)
+            {
+                final long key = index.get(position++);
+                if (Scan.matches(pattern, index, prefixLength + 1, key))
+                {
+                    selection[size] = row;
+                    keys[size++] = key;
+                }
+            }
+            else if (batch != null && row + 1 < batch.size)
+            {
+                seek(batch.columns[slot][++row]);
+                position = runFrom;
+            }
+            else if (size > 0)
+            {
+                break; // The input batch must be gathered before it is reused
+            }
+            else if ((batch = input.next()) != null)
+            {
+                row = -1;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        out.gather(batch, selection, size);
+        for (int i = 0; i < size; i++)
+            Scan.write(pattern, index, prefixLength + 1, keys[i], out, i);
+        return out;
+    }
+
+    /**
+     * Finds the run of keys having the given value, which is no less than the previous value
+     */
+    private void seek(int value)
+    {
+        if (value == this.value)
+            return;
+        this.value = value;
+        triple[index.position(prefixLength)] = value;
+        runFrom = index.from(triple, prefixLength + 1, runTo);
+        runTo = runFrom;
+        while (runTo < to && TripleIndex.component(index.get(runTo), prefixLength) == value)
+            runTo++;
+    }
+}
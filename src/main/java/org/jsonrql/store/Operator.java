@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+/**
+ * A step of the evaluation of a where clause, producing solutions a batch at a time
+ */
+interface Operator
+{
+    /**
+     * @return the next non-empty batch of solutions, valid until the following call, or <code>null</code> if
+     * there are no more
+     */
+    Batch next();
+}
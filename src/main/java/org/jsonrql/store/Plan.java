@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.jsonrql.*;
+import org.jsonrql.internal.Filter;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+import static java.util.Collections.singletonList;
+import static org.jsonrql.jena.JsonRqlJena.asNode;
+import static org.jsonrql.jena.JsonRqlJena.asPattern;
+
+/**
+ * A <b>json-rql</b> where clause compiled against the terms of a store. Variables, and blank nodes, which
+ * match like variables, are numbered as slots of a solution row, in which each slot holds a term identifier,
+ * or zero if unbound.
+ * <p>
+ * Each group of patterns is joined as in its Jena translation: the subjects of the group as one basic graph
+ * pattern, then each union, then the in-line filters of the subjects. Triple patterns are joined in order of
+ * the most bound positions first, and a filter is applied as soon as its variables are bound.
+ * <p>
+ * The solutions are evaluated by a pipeline of {@link Operator}s, passing {@link Batch}es of rows.
+ */
+final class Plan
+{
+    private final JsonRqlStore store;
+    private final CompiledContext context;
+    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    private int slots;
+    private final Block root;
+    private final List<Class<? extends Operator>> operators = new ArrayList<>();
+
+    Plan(JsonRqlStore store, List<? extends Pattern> where, CompiledContext context)
+    {
+        this.store = store;
+        this.context = context;
+        this.root = block(where);
+    }
+
+    /**
+     * @return the names of the variables in the where clause, in order of appearance
+     */
+    Set<String> variables()
+    {
+        return variables.keySet();
+    }
+
+    /**
+     * @return the slot of the named variable, or -1 if it does not appear in the where clause
+     */
+    int slot(String variable)
+    {
+        return variables.getOrDefault(variable, -1);
+    }
+
+    /**
+     * @return the triple patterns of the top-level group. Each position holds a term identifier if
+     * positive, a slot <code>s</code> as <code>-(s + 1)</code> if negative, or zero for a term not in the store
+     */
+    List<int[]> patterns()
+    {
+        return root.patterns;
+    }
+
+    /**
+     * @return the type of operator chosen for each triple pattern, in order of evaluation, after the
+     * solutions have been evaluated
+     */
+    List<Class<? extends Operator>> operators()
+    {
+        return operators;
+    }
+
+    List<int[]> solutions()
+    {
+        final List<int[]> solutions = new ArrayList<>();
+        final Operator operator = evaluate(root, unit()).operator;
+        for (Batch batch = operator.next(); batch != null; batch = operator.next())
+            for (int row = 0; row < batch.size; row++)
+                solutions.add(batch.row(row));
+        return solutions;
+    }
+
+    private static final class Block
+    {
+        final List<int[]> patterns = new ArrayList<>();
+        final List<Filter<Node>> filters = new ArrayList<>();
+        final List<List<Block>> unions = new ArrayList<>();
+    }
+
+    private Block block(List<? extends Pattern> where)
+    {
+        final Block block = new Block();
+        final List<Subject> subjects = new ArrayList<>();
+        for (Pattern pattern : where)
+        {
+            if (pattern instanceof Subject)
+            {
+                subjects.add((Subject)pattern);
+            }
+            else if (pattern instanceof Group)
+            {
+                final Group group = (Group)pattern;
+                group.graph().ifPresent(subjects::addAll);
+                group.union().ifPresent(union -> {
+                    final List<Block> branches = new ArrayList<>();
+                    union.forEach(branch -> branches.add(block(singletonList(branch))));
+                    block.unions.add(branches);
+                });
+            }
+            // Sub-queries are not translated to Jena either
+        }
+        final Map<Node, Integer> blankNodes = new HashMap<>();
+        for (Triple triple : asPattern(subjects, context))
+        {
+            block.patterns.add(new int[]{
+                encode(triple.getSubject(), blankNodes),
+                encode(triple.getPredicate(), blankNodes),
+                encode(triple.getObject(), blankNodes)});
+        }
+        subjects.forEach(subject -> addFilters(subject, block));
+        return block;
+    }
+
+    private int encode(Node node, Map<Node, Integer> blankNodes)
+    {
+        if (node.isVariable())
+            return -slot(node.getName(), true) - 1;
+        else if (node.isBlank())
+            return -blankNodes.computeIfAbsent(node, blank -> slots++) - 1;
+        else
+            return store.dictionary().id(node);
+    }
+
+    private int slot(String variable, boolean create)
+    {
+        final Integer slot = variables.get(variable);
+        if (slot != null || !create)
+            return slot == null ? -1 : slot;
+        variables.put(variable, slots);
+        return slots++;
+    }
+
+    private void addFilters(Value value, Block block)
+    {
+        if (value instanceof Subject)
+        {
+            ((Subject)value).values().forEach(nested -> addFilters(nested, block));
+        }
+        else if (value instanceof InlineFilter)
+        {
+            final InlineFilter inlineFilter = (InlineFilter)value;
+            inlineFilter.filters().forEach((operator, arguments) -> {
+                final int[] argSlots = new int[arguments.size() + 1];
+                final Node[] constants = new Node[arguments.size() + 1];
+                argSlots[0] = slot(inlineFilter.variable().name(), true);
+                for (int i = 0; i < arguments.size(); i++)
+                {
+                    final Expression argument = arguments.get(i);
+                    if (argument instanceof Variable)
+                    {
+                        argSlots[i + 1] = slot(((Variable)argument).name(), true);
+                    }
+                    else
+                    {
+                        argSlots[i + 1] = -1;
+                        constants[i + 1] = asNode((Value)argument, context);
+                    }
+                }
+                block.filters.add(new Filter<>(operator, argSlots, constants, Terms.VALUES));
+            });
+        }
+    }
+
+    /**
+     * Solutions under construction, with what is known about them for choosing the next operator
+     */
+    private static final class Pipeline
+    {
+        Operator operator;
+        /**
+         * The slot by which the solutions are sorted, or -1
+         */
+        int sortedSlot = -1;
+        /**
+         * A rough number of solutions
+         */
+        int estimate;
+        /**
+         * Slots bound in every solution, and slots that may be bound in some
+         */
+        boolean[] bound, maybe;
+        /**
+         * Whether the solutions are just the single solution with no slots bound
+         */
+        boolean unit;
+
+        Pipeline(Operator operator, int estimate, boolean[] bound, boolean[] maybe)
+        {
+            this.operator = operator;
+            this.estimate = estimate;
+            this.bound = bound;
+            this.maybe = maybe;
+        }
+    }
+
+    private Pipeline unit()
+    {
+        final Pipeline unit = new Pipeline(new Unit(slots), 1, new boolean[slots], new boolean[slots]);
+        unit.unit = true;
+        return unit;
+    }
+
+    private Pipeline evaluate(Block block, Pipeline pipeline)
+    {
+        for (int[] pattern : block.patterns)
+            for (int position : pattern)
+                if (position == 0)
+                    return new Pipeline(() -> null, 0, pipeline.bound, pipeline.maybe); // Cannot match anything
+
+        // Filters are scoped to the group, so only slots bound by its own patterns make them ready
+        final boolean[] bound = new boolean[slots];
+        final List<Filter<Node>> pending = new ArrayList<>(block.filters);
+        final List<int[]> remaining = new ArrayList<>(block.patterns);
+        while (!remaining.isEmpty())
+        {
+            final int[] pattern = cheapest(remaining, pipeline.bound);
+            remaining.remove(pattern);
+            pipeline = join(pipeline, pattern);
+            for (int position : pattern)
+                if (position < 0)
+                    bound[-position - 1] = true;
+
+            for (Iterator<Filter<Node>> filters = pending.iterator(); filters.hasNext(); )
+            {
+                final Filter<Node> filter = filters.next();
+                if (isReady(filter, bound))
+                {
+                    pipeline.operator = new Filtering(pipeline.operator, filter, store.dictionary(), slots);
+                    filters.remove();
+                }
+            }
+        }
+        for (List<Block> union : block.unions)
+            pipeline = union(union, pipeline);
+        for (Filter<Node> filter : pending)
+        {
+            pipeline.operator = new Filtering(pipeline.operator, filter, store.dictionary(), slots);
+            pipeline.unit = false;
+        }
+        return pipeline;
+    }
+
+    private Pipeline union(List<Block> branches, Pipeline input)
+    {
+        final Replay replay = input.unit ? null : new Replay(input.operator);
+        final List<Operator> operators = new ArrayList<>();
+        final boolean[] bound = new boolean[slots], maybe = input.maybe.clone();
+        Arrays.fill(bound, true);
+        int estimate = 0;
+        for (Block branch : branches)
+        {
+            final Pipeline branchInput = replay == null ? unit() :
+                new Pipeline(replay.replay(), input.estimate, input.bound.clone(), input.maybe.clone());
+            final Pipeline output = evaluate(branch, branchInput);
+            operators.add(output.operator);
+            estimate += output.estimate;
+            for (int slot = 0; slot < slots; slot++)
+            {
+                bound[slot] &= output.bound[slot];
+                maybe[slot] |= output.maybe[slot];
+            }
+        }
+        return new Pipeline(new Concat(operators), estimate, bound, maybe);
+    }
+
+    /**
+     * Joins the solutions with a triple pattern. A merge join is used if the solutions are sorted by the
+     * pattern's only bound variable, in the order of an index; otherwise a hash join if building it is likely
+     * to be cheaper than probing the index for each solution; otherwise an index join.
+     */
+    private Pipeline join(Pipeline input, int[] pattern)
+    {
+        final Pipeline output = new Pipeline(null, input.estimate, input.bound.clone(), input.maybe.clone());
+        output.sortedSlot = input.sortedSlot;
+        final int[] joinSlots = new int[3], addedSlots = new int[3];
+        int joins = 0, adds = 0;
+        boolean unknown = false;
+        for (int position : pattern)
+        {
+            final int slot = -position - 1;
+            if (position > 0 || contains(joinSlots, joins, slot) || contains(addedSlots, adds, slot))
+                continue;
+            if (input.bound[slot])
+                joinSlots[joins++] = slot;
+            else if (input.maybe[slot])
+                unknown = true;
+            else
+                addedSlots[adds++] = slot;
+            output.bound[slot] = output.maybe[slot] = true;
+        }
+
+        final Scan scan = unknown ? null : new Scan(store, pattern, slots);
+        final TripleIndex mergeIndex = scan != null && joins == 1 && joinSlots[0] == input.sortedSlot &&
+            occurrences(pattern, input.sortedSlot) == 1 ? MergeJoin.index(store, pattern, input.sortedSlot) : null;
+        if (input.unit)
+        {
+            output.operator = scan;
+            output.sortedSlot = scan.sortedSlot();
+            output.estimate = scan.size();
+        }
+        else if (mergeIndex != null)
+        {
+            output.operator = new MergeJoin(input.operator, mergeIndex, pattern, input.sortedSlot, slots);
+        }
+        else if (scan != null && joins > 0 && scan.size() <= input.estimate)
+        {
+            output.operator = new HashJoin(input.operator, scan,
+                Arrays.copyOf(joinSlots, joins), Arrays.copyOf(addedSlots, adds), slots);
+        }
+        else
+        {
+            output.operator = new IndexJoin(input.operator, store, pattern, slots);
+        }
+        operators.add(output.operator.getClass());
+        // Assume that a join on bound variables does not multiply the solutions
+        if (scan != null && adds == 0)
+            output.estimate = Math.min(input.estimate, scan.size());
+        else if (scan != null && joins == 0)
+            output.estimate = (int)Math.min((long)input.estimate * scan.size(), Integer.MAX_VALUE);
+        return output;
+    }
+
+    private static boolean contains(int[] slots, int count, int slot)
+    {
+        for (int i = 0; i < count; i++)
+            if (slots[i] == slot)
+                return true;
+        return false;
+    }
+
+    private static int occurrences(int[] pattern, int slot)
+    {
+        int occurrences = 0;
+        for (int position : pattern)
+            if (position == -slot - 1)
+                occurrences++;
+        return occurrences;
+    }
+
+    private int[] cheapest(List<int[]> patterns, boolean[] known)
+    {
+        int[] cheapest = null;
+        int mostBound = -1, fewest = Integer.MAX_VALUE;
+        for (int[] pattern : patterns)
+        {
+            final int[] constants = Scan.constants(pattern);
+            int bound = 0;
+            for (int position : pattern)
+                if (position > 0 || known[-position - 1])
+                    bound++;
+            final TripleIndex index = store.index(constants);
+            final int prefixLength = index.prefixLength(constants);
+            final int estimate = index.to(constants, prefixLength) - index.from(constants, prefixLength);
+            if (bound > mostBound || bound == mostBound && estimate < fewest)
+            {
+                cheapest = pattern;
+                mostBound = bound;
+                fewest = estimate;
+            }
+        }
+        return cheapest;
+    }
+
+    private static boolean isReady(Filter<Node> filter, boolean[] bound)
+    {
+        for (int slot : filter.slots())
+            if (slot >= 0 && !bound[slot])
+                return false;
+        return true;
+    }
+
+    /**
+     * The single solution with no slots bound
+     */
+    private static final class Unit implements Operator
+    {
+        private final Batch batch;
+        private boolean done;
+
+        Unit(int slots)
+        {
+            this.batch = new Batch(slots);
+            this.batch.size = 1;
+        }
+
+        @Override public Batch next()
+        {
+            if (done)
+                return null;
+            done = true;
+            return batch;
+        }
+    }
+
+    /**
+     * Buffers solutions so that they can be evaluated by each branch of a union
+     */
+    private static final class Replay
+    {
+        private final Operator input;
+        private List<Batch> batches;
+
+        Replay(Operator input)
+        {
+            this.input = input;
+        }
+
+        Operator replay()
+        {
+            final int[] next = {0};
+            return () -> {
+                if (batches == null)
+                {
+                    batches = new ArrayList<>();
+                    for (Batch batch = input.next(); batch != null; batch = input.next())
+                        batches.add(batch.copy());
+                }
+                return next[0] < batches.size() ? batches.get(next[0]++) : null;
+            };
+        }
+    }
+
+    private static final class Concat implements Operator
+    {
+        private final Iterator<Operator> operators;
+        private Operator current;
+
+        Concat(List<Operator> operators)
+        {
+            this.operators = operators.iterator();
+        }
+
+        @Override public Batch next()
+        {
+            while (current != null || operators.hasNext())
+            {
+                if (current == null)
+                    current = operators.next();
+                final Batch batch = current.next();
+                if (batch != null)
+                    return batch;
+                current = null;
+            }
+            return null;
+        }
+    }
+
+    private static final class Filtering implements Operator
+    {
+        private final Operator input;
+        private final Filter<Node> filter;
+        private final Batch out;
+        private final int[] selection = new int[Batch.CAPACITY];
+        /**
+         * The values of the current row, reused for every row
+         */
+        private final IntFunction<Node> values;
+        private Batch batch;
+        private int row;
+
+        Filtering(Operator input, Filter<Node> filter, Dictionary dictionary, int slots)
+        {
+            this.input = input;
+            this.filter = filter;
+            this.out = new Batch(slots);
+            this.values = slot -> {
+                final int id = batch.columns[slot][row];
+                return id == 0 ? null : dictionary.term(id);
+            };
+        }
+
+        @Override public Batch next()
+        {
+            for (batch = input.next(); batch != null; batch = input.next())
+            {
+                int size = 0;
+                for (row = 0; row < batch.size; row++)
+                    if (filter.test(values))
+                        selection[size++] = row;
+                if (size > 0)
+                {
+                    out.gather(batch, selection, size);
+                    return out;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+/**
+ * Scans the triples matching a pattern, independently of any other solutions. The triples are in the order of
+ * the index whose prefix is the pattern's constants, so the solutions are sorted by the variable next in that
+ * order.
+ * <p>
+ * A pattern position holds a term identifier if positive, or a slot <code>s</code> as <code>-(s + 1)</code> if
+ * negative.
+ */
+final class Scan implements Operator
+{
+    private final int[] pattern;
+    private final TripleIndex index;
+    private final int prefixLength, to;
+    private int position;
+    private final Batch out;
+
+    Scan(JsonRqlStore store, int[] pattern, int slots)
+    {
+        final int[] triple = constants(pattern);
+        this.pattern = pattern;
+        this.index = store.index(triple);
+        this.prefixLength = index.prefixLength(triple);
+        this.position = index.from(triple, prefixLength);
+        this.to = index.to(triple, prefixLength);
+        this.out = new Batch(slots);
+    }
+
+    /**
+     * @return the slot by which the solutions are sorted, or -1 if the pattern has no variables
+     */
+    int sortedSlot()
+    {
+        return prefixLength < 3 ? -pattern[index.position(prefixLength)] - 1 : -1;
+    }
+
+    /**
+     * @return the number of triples to be scanned
+     */
+    int size()
+    {
+        return to - position;
+    }
+
+    @Override public Batch next()
+    {
+        // Slots not in the pattern remain unbound in every row
+        out.size = 0;
+        while (position < to && !out.isFull())
+        {
+            final long key = index.get(position++);
+            if (matches(pattern, index, prefixLength, key))
+                write(pattern, index, prefixLength, key, out, out.size++);
+        }
+        return out.size == 0 ? null : out;
+    }
+
+    /**
+     * @return the term identifiers of the constants of the pattern, zero for its variables
+     */
+    static int[] constants(int[] pattern)
+    {
+        final int[] triple = new int[3];
+        for (int position = 0; position < 3; position++)
+            triple[position] = Math.max(pattern[position], 0);
+        return triple;
+    }
+
+    /**
+     * @return whether a key, having the given bound prefix, agrees on any variable repeated in the pattern
+     */
+    static boolean matches(int[] pattern, TripleIndex index, int prefixLength, long key)
+    {
+        for (int component = prefixLength + 1; component < 3; component++)
+            for (int earlier = prefixLength; earlier < component; earlier++)
+                if (pattern[index.position(component)] == pattern[index.position(earlier)] &&
+                    TripleIndex.component(key, component) != TripleIndex.component(key, earlier))
+                    return false;
+        return true;
+    }
+
+    /**
+     * Binds the variables of the pattern following the bound prefix to the terms of a key
+     */
+    static void write(int[] pattern, TripleIndex index, int prefixLength, long key, Batch out, int row)
+    {
+        for (int component = prefixLength; component < 3; component++)
+            out.columns[-pattern[index.position(component)] - 1][row] = TripleIndex.component(key, component);
+    }
+}
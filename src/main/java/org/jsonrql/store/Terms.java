@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.vocabulary.RDF;
+import org.jsonrql.internal.Values;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Value comparison of RDF terms, following SPARQL for numbers, booleans and strings
+ */
+final class Terms
+{
+    static final Values<Node> VALUES = new Values<Node>()
+    {
+        @Override public Integer compare(Node a, Node b)
+        {
+            return Terms.compare(a, b);
+        }
+
+        @Override public boolean isLiteral(Node term)
+        {
+            return term.isLiteral();
+        }
+
+        @Override public boolean isBlank(Node term)
+        {
+            return term.isBlank();
+        }
+
+        @Override public boolean isString(Node term)
+        {
+            return Terms.isString(term);
+        }
+
+        @Override public String lexical(Node term)
+        {
+            return term.isLiteral() ? term.getLiteralLexicalForm() : term.toString();
+        }
+
+        @Override public String datatype(Node literal)
+        {
+            return literal.getLiteralDatatypeURI();
+        }
+    };
+
+    private Terms()
+    {
+    }
+
+    /**
+     * @return the value comparison of two literals, or <code>null</code> if they are not comparable
+     */
+    static Integer compare(Node a, Node b)
+    {
+        if (a == null || b == null || !a.isLiteral() || !b.isLiteral())
+            return null;
+
+        final Object x = value(a), y = value(b);
+        if (x instanceof Number && y instanceof Number)
+            return compareNumbers((Number)x, (Number)y);
+        else if (x instanceof Boolean && y instanceof Boolean)
+            return Boolean.compare((Boolean)x, (Boolean)y);
+        else if (isString(a) && isString(b) && a.getLiteralLanguage().equalsIgnoreCase(b.getLiteralLanguage()))
+            return a.getLiteralLexicalForm().compareTo(b.getLiteralLexicalForm());
+        else
+            return null;
+    }
+
+    static boolean isString(Node node)
+    {
+        return node.isLiteral() && (XSDDatatype.XSDstring.getURI().equals(node.getLiteralDatatypeURI()) ||
+            RDF.dtLangString.getURI().equals(node.getLiteralDatatypeURI()));
+    }
+
+    private static Object value(Node literal)
+    {
+        try
+        {
+            return literal.getLiteralValue();
+        }
+        catch (DatatypeFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private static int compareNumbers(Number x, Number y)
+    {
+        if (x instanceof Double || x instanceof Float || y instanceof Double || y instanceof Float)
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        else
+            return decimal(x).compareTo(decimal(y));
+    }
+
+    private static BigDecimal decimal(Number number)
+    {
+        if (number instanceof BigDecimal)
+            return (BigDecimal)number;
+        else if (number instanceof BigInteger)
+            return new BigDecimal((BigInteger)number);
+        else
+            return BigDecimal.valueOf(number.longValue());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import java.util.Arrays;
+
+import static org.jsonrql.store.Dictionary.ID_BITS;
+import static org.jsonrql.store.Dictionary.MASK;
+
+/**
+ * One ordering of the triples of a store, as a sorted array of keys each packing three term identifiers.
+ * Triples matching any bound prefix of the ordering are a contiguous range, found by binary search.
+ */
+final class TripleIndex
+{
+    /**
+     * Orderings, as the triple positions (subject, predicate, object) of each key component
+     */
+    static final int[] SPO = {0, 1, 2}, POS = {1, 2, 0}, OSP = {2, 0, 1};
+
+    private final int[] order;
+    private long[] keys = new long[0];
+
+    TripleIndex(int[] order)
+    {
+        this.order = order;
+    }
+
+    static long key(int a, int b, int c)
+    {
+        return (long)a << (2 * ID_BITS) | (long)b << ID_BITS | c;
+    }
+
+    static int component(long key, int index)
+    {
+        return (int)(key >>> (ID_BITS * (2 - index))) & MASK;
+    }
+
+    /**
+     * @return the triple position (subject, predicate or object) of a key component in this ordering
+     */
+    int position(int component)
+    {
+        return order[component];
+    }
+
+    /**
+     * @param triple subject, predicate and object identifiers, zero where unbound
+     * @return the number of leading components of this ordering that are bound in the triple
+     */
+    int prefixLength(int[] triple)
+    {
+        int length = 0;
+        while (length < 3 && triple[order[length]] != 0)
+            length++;
+        return length;
+    }
+
+    /**
+     * @return the position of the first key starting with the bound prefix of the given triple
+     */
+    int from(int[] triple, int prefixLength)
+    {
+        return lowerBound(prefix(triple, prefixLength), 0);
+    }
+
+    /**
+     * @return the position of the first key at or after the start position starting with the bound prefix of
+     * the given triple, or sorting after it
+     */
+    int from(int[] triple, int prefixLength, int start)
+    {
+        return lowerBound(prefix(triple, prefixLength), start);
+    }
+
+    /**
+     * @return the position after the last key starting with the bound prefix of the given triple
+     */
+    int to(int[] triple, int prefixLength)
+    {
+        return prefixLength == 0 ? keys.length :
+            lowerBound(prefix(triple, prefixLength) + (1L << (ID_BITS * (3 - prefixLength))), 0);
+    }
+
+    long get(int position)
+    {
+        return keys[position];
+    }
+
+    boolean contains(long key)
+    {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    int size()
+    {
+        return keys.length;
+    }
+
+    /**
+     * Removes and then adds the given triples
+     *
+     * @param removed sorted keys in subject-predicate-object order
+     * @param added sorted keys in subject-predicate-object order
+     */
+    void apply(long[] removed, long[] added)
+    {
+        removed = reorder(removed);
+        added = reorder(added);
+        final long[] merged = new long[keys.length + added.length];
+        int size = 0, r = 0, a = 0;
+        for (long key : keys)
+        {
+            while (a < added.length && added[a] < key)
+                merged[size++] = added[a++];
+            while (r < removed.length && removed[r] < key)
+                r++;
+            if (a < added.length && added[a] == key)
+                a++;
+            else if (r < removed.length && removed[r] == key)
+                continue;
+            merged[size++] = key;
+        }
+        while (a < added.length)
+            merged[size++] = added[a++];
+        keys = size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private long[] reorder(long[] spoKeys)
+    {
+        if (order == SPO)
+            return spoKeys;
+
+        final long[] reordered = new long[spoKeys.length];
+        for (int i = 0; i < spoKeys.length; i++)
+            reordered[i] = key(component(spoKeys[i], order[0]),
+                               component(spoKeys[i], order[1]),
+                               component(spoKeys[i], order[2]));
+        Arrays.sort(reordered);
+        return reordered;
+    }
+
+    private long prefix(int[] triple, int length)
+    {
+        return key(length > 0 ? triple[order[0]] : 0,
+                   length > 1 ? triple[order[1]] : 0,
+                   length > 2 ? triple[order[2]] : 0);
+    }
+
+    private int lowerBound(long key, int start)
+    {
+        final int found = Arrays.binarySearch(keys, start, keys.length, key);
+        return found < 0 ? -found - 1 : found;
+    }
+}
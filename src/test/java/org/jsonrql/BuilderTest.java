@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.Arrays.asList;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Update.insert;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BuilderTest
+{
+    @Test void testBuilders()
+    {
+        final Subject.Builder fred = Subject.builder("http://example.org/fred")
+            .with("http://example.org/name", "Fred")
+            .with("http://example.org/age", literal(40));
+        assertEquals(subject("http://example.org/fred")
+                         .with("http://example.org/name", "Fred")
+                         .with("http://example.org/age", literal(40)), fred.build());
+        // The builder can be re-used without affecting what it has built
+        final Subject built = fred.build();
+        fred.with("http://example.org/name", "Freddy");
+        assertEquals(asList(literal("Fred")), built.get("http://example.org/name").orElse(null));
+
+        assertEquals(insert(built).andInsert(built).andDelete(built).where(subject(var("s"))),
+                     Update.builder().insert(built, built).delete(built).where(subject(var("s"))).build());
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import static org.jsonrql.Group.group;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InternerTest
+{
+    @Test void testInterner()
+    {
+        final Interner interner = new Interner();
+        final Subject fred = interner.intern(subject("http://example.org/fred")
+                                                 .with("http://example.org/name", "Fred")
+                                                 .with("http://example.org/spouse", subject(var("wife"))));
+        final Subject fred2 = interner.intern(Subject.builder("http://example.org/fred")
+                                                  .with("http://example.org/spouse", subject(var("wife")))
+                                                  .with("http://example.org/name", "Fred").build());
+        assertSame(fred, fred2);
+        assertEquals(interner.fingerprint(fred), interner.fingerprint(fred2));
+        // Nested nodes are shared too
+        final Group group = interner.intern(group(subject(var("wife")).with("http://example.org/name", "Wilma")));
+        assertSame(fred.getValue("http://example.org/spouse").orElse(null),
+                   interner.intern(subject(var("wife"))));
+        assertNotEquals(interner.fingerprint(fred), interner.fingerprint(group));
+        assertNotEquals(interner.fingerprint(literal(1)), interner.fingerprint(literal(1.0)));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Name.name;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JrqlTest
+{
+    private static final Jrql.Transform<String> TYPE = new Jrql.Transform<String>()
+    {
+        @Override public String map(Jrql jrql) { return "jrql"; }
+        @Override public String map(Read<?> read) { return "read"; }
+        @Override public String map(Variable variable) { return "variable"; }
+        @Override public String map(Subject subject) { return "subject"; }
+        @Override public String map(Name name) { return "name"; }
+        @Override public String map(Literal literal) { return "literal"; }
+    };
+
+    @Test void testMap()
+    {
+        assertEquals("variable", Jrql.map(var("v"), TYPE));
+        assertEquals("name", Jrql.map(name("http://example.org/fred"), TYPE));
+        assertEquals("literal", Jrql.map(literal(1), TYPE));
+        assertEquals("subject", Jrql.map(subject("?s"), TYPE));
+        // Falls back through the transform's default methods
+        assertEquals("read", Jrql.map(select("?s").where(subject("?s")), TYPE));
+        assertNull(Jrql.map(null, TYPE));
+    }
+
+    @Test void testMapOtherImplementation()
+    {
+        // An implementation outside the library need only accept a visitor
+        final Jrql other = visitor -> visitor.visit(name("http://example.org/fred"));
+        assertEquals("name", Jrql.map(other, TYPE));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.InlineFilter.filter;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Name.name;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Update.insert;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonRqlSmileTest
+{
+    private static final Context CONTEXT = context().prefix("ex", "http://example.org/");
+
+    @Test void testSelect() throws IOException
+    {
+        final Select select = select("?name", "?age")
+            .where(subject("?s")
+                       .type("ex:Person")
+                       .with("ex:name", var("name"))
+                       .with("ex:age", filter("?age", "@gt", literal(40))),
+                   union(subject("?s").with("ex:nick", literal("Fred").language("en")),
+                         subject("?s").with("ex:height", literal(new BigDecimal("1.8500000000000000000001")))))
+            .orderBy("?name").limit(10).context(CONTEXT);
+        assertRoundTrip(select);
+    }
+
+    @Test void testUpdate() throws IOException
+    {
+        final Update update = insert(subject("ex:fred")
+                                         .with("ex:name", literal("Fred"))
+                                         .with("ex:spouse", subject("ex:wilma").with("ex:name", literal("Wilma")))
+                                         .with("ex:age", literal(40), literal(41L)))
+            .andDelete(subject("ex:fred").with("ex:name", var("name")))
+            .where(subject("ex:fred").with("ex:name", var("name")).with("ex:alive", literal(true)))
+            .context(CONTEXT);
+        assertRoundTrip(update);
+        // Patterns are also written in Smile
+        final Subject subject = subject(name("ex:barney")).with("ex:score", literal(1.5));
+        assertEquals(subject, JsonRqlSmile.patternReader().readValue(JsonRqlSmile.writer().writeValueAsBytes(subject)));
+    }
+
+    private static void assertRoundTrip(Query<?> query) throws IOException
+    {
+        final byte[] smile = JsonRqlSmile.writer().writeValueAsBytes(query);
+        final Query<?> read = JsonRqlSmile.queryReader().readValue(smile);
+        assertEquals(query.getClass(), read.getClass());
+        assertEquals(query, read);
+        // Keywords and repeated names are back-references, so the binary form is smaller than the text
+        assertTrue(smile.length < JsonRqlModule.writer().writeValueAsBytes(query).length);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+
+import static java.util.Collections.singleton;
+
+import static org.jsonrql.Name.name;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameTest
+{
+    @Test void testInterned()
+    {
+        final Name fred = name("http://example.org/fred");
+        assertSame(fred, name(new String("http://example.org/fred")));
+        assertSame(fred, name(new StringBuilder("http://example.org/").append("fred").toString()));
+        assertEquals(name(null), name(null));
+    }
+
+    @Test void testCollected() throws Exception
+    {
+        try (IsolatedLoader loader = new IsolatedLoader())
+        {
+            // A fresh copy of the class has a pool of its own to inspect
+            final Class<?> nameClass = loader.loadClass(Name.class.getName());
+            final Method name = nameClass.getMethod("name", String.class);
+            final Field poolField = nameClass.getDeclaredField("POOL");
+            poolField.setAccessible(true);
+            final Map<?, ?> pool = (Map<?, ?>)poolField.get(null);
+
+            final Object fred = name.invoke(null, "http://example.org/fred");
+            assertEquals(singleton("http://example.org/fred"), pool.keySet());
+
+            // Collect the name as the garbage collector would, by clearing and enqueuing its reference
+            final Reference<?> ref = (Reference<?>)pool.get("http://example.org/fred");
+            ref.clear();
+            assertTrue(ref.enqueue());
+            // Collected names are expunged from the pool via the reference queue on the next interning
+            final Object wilma = name.invoke(null, "http://example.org/wilma");
+            assertEquals(singleton("http://example.org/wilma"), pool.keySet());
+            assertSame(wilma, name.invoke(null, "http://example.org/wilma"));
+
+            // A name whose reference is cleared but not yet enqueued is replaced in the pool
+            ((Reference<?>)pool.get("http://example.org/wilma")).clear();
+            final Object newWilma = name.invoke(null, "http://example.org/wilma");
+            assertNotSame(wilma, newWilma);
+            assertSame(newWilma, name.invoke(null, "http://example.org/wilma"));
+            assertNotSame(fred, name.invoke(null, "http://example.org/fred"));
+        }
+    }
+
+    @Test void testInterningDisabled() throws Exception
+    {
+        final String property = "org.jsonrql.Name.intern";
+        final String previous = System.getProperty(property);
+        System.setProperty(property, "false");
+        try (IsolatedLoader loader = new IsolatedLoader())
+        {
+            // The property is read when the class is initialised, so load a fresh copy of it
+            final Method name = loader.loadClass(Name.class.getName()).getMethod("name", String.class);
+            final Object fred = name.invoke(null, "http://example.org/fred");
+            assertNotSame(fred, name.invoke(null, "http://example.org/fred"));
+            assertEquals(fred, name.invoke(null, "http://example.org/fred"));
+        }
+        finally
+        {
+            if (previous == null)
+                System.clearProperty(property);
+            else
+                System.setProperty(property, previous);
+        }
+    }
+
+    /**
+     * Loads its own copy of {@link Name} and its nested classes, delegating everything else
+     */
+    private static class IsolatedLoader extends URLClassLoader
+    {
+        IsolatedLoader()
+        {
+            super(new URL[] { Name.class.getProtectionDomain().getCodeSource().getLocation() },
+                  Name.class.getClassLoader());
+        }
+
+        @Override protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException
+        {
+            if (!className.equals(Name.class.getName()) && !className.startsWith(Name.class.getName() + "$"))
+                return super.loadClass(className, resolve);
+
+            synchronized (getClassLoadingLock(className))
+            {
+                Class<?> loaded = findLoadedClass(className);
+                if (loaded == null)
+                    loaded = findClass(className);
+                if (resolve)
+                    resolveClass(loaded);
+                return loaded;
+            }
+        }
+    }
+}
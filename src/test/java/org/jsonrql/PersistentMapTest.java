@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PersistentMapTest
+{
+    @Test void testMatchesHashMap()
+    {
+        final Random random = new Random(42);
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        final Map<Key, Integer> expected = new HashMap<>();
+        PersistentMap<Key, Integer> snapshot = map;
+        Map<Key, Integer> snapshotExpected = new HashMap<>();
+        for (int i = 0; i < 20000; i++)
+        {
+            final Key key = new Key(random.nextInt(2000));
+            if (random.nextInt(3) == 0)
+            {
+                map = map.minus(key);
+                expected.remove(key);
+            }
+            else
+            {
+                final Integer value = random.nextInt(10);
+                map = map.plus(key, value);
+                expected.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+
+            if (i % 500 == 0)
+            {
+                assertMatches(expected, map);
+                // Earlier versions are unaffected by later changes
+                assertMatches(snapshotExpected, snapshot);
+                snapshot = map;
+                snapshotExpected = new HashMap<>(expected);
+            }
+        }
+        assertMatches(expected, map);
+
+        for (Key key : new HashMap<>(expected).keySet())
+        {
+            map = map.minus(key);
+            expected.remove(key);
+        }
+        assertSame(PersistentMap.empty(), map);
+        assertMatches(expected, map);
+    }
+
+    @Test void testUnchanged()
+    {
+        final Key key = new Key(1);
+        final PersistentMap<Key, Integer> map = PersistentMap.<Key, Integer>empty().plus(key, 1);
+        assertSame(map, map.plus(key, 1));
+        assertSame(map, map.minus(new Key(2)));
+    }
+
+    private static void assertMatches(Map<Key, Integer> expected, PersistentMap<Key, Integer> map)
+    {
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.size(), map.size());
+        final Map<Key, Integer> iterated = new HashMap<>();
+        map.forEach((key, value) -> assertEquals(null, iterated.put(key, value)));
+        assertEquals(expected, iterated);
+        // Equal however the trie was built
+        PersistentMap<Key, Integer> rebuilt = PersistentMap.empty();
+        for (Map.Entry<Key, Integer> entry : expected.entrySet())
+            rebuilt = rebuilt.plus(entry.getKey(), entry.getValue());
+        assertEquals(map, rebuilt);
+    }
+
+    /**
+     * A key with a hash code chosen to collide, either fully or in some of its bits
+     */
+    private static final class Key
+    {
+        final int id, hash;
+
+        Key(int id)
+        {
+            this.id = id;
+            switch (id % 4)
+            {
+                case 0: // Full collisions
+                    this.hash = id % 3;
+                    break;
+                case 1: // Collisions in the low bits only
+                    this.hash = id << 20;
+                    break;
+                case 2: // Collisions in the high bits only
+                    this.hash = id % 7 << 25 | id;
+                    break;
+                default:
+                    this.hash = Integer.hashCode(id) * 0x9e3779b9;
+            }
+        }
+
+        @Override public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override public boolean equals(Object o)
+        {
+            return o instanceof Key && id == ((Key)o).id;
+        }
+
+        @Override public String toString()
+        {
+            return "Key" + id;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.jsonrql.Context.context;
+import static org.jsonrql.JsonRqlModule.patternReader;
+import static org.jsonrql.JsonRqlModule.queryReader;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Update.insert;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryDeserializerTest
+{
+    @Test void testTypeDecidedAfterContextAndWhere() throws IOException
+    {
+        final Context context = context().prefix("ex", "http://example.org/");
+        final Subject where = subject(var("s")).with("ex:name", var("name"));
+
+        final Query<?> selected = queryReader().readValue(json(
+            "{'@context': {'ex': 'http://example.org/'}, '@where': {'@id': '?s', 'ex:name': '?name'}, " +
+                "'@select': '?name'}"));
+        assertEquals(Select.class, selected.getClass());
+        assertEquals(select("?name").where(where).context(context), selected);
+
+        final Query<?> inserted = queryReader().readValue(json(
+            "{'@where': {'@id': '?s', 'ex:name': '?name'}, '@context': {'ex': 'http://example.org/'}, " +
+                "'@insert': {'@id': '?s', 'ex:age': 40}}"));
+        assertEquals(Update.class, inserted.getClass());
+        assertEquals(insert(subject(var("s")).with("ex:age", literal(40))).where(where).context(context), inserted);
+
+        // A query embedded as a pattern is decided the same way
+        final Pattern pattern = patternReader().readValue(json(
+            "{'@where': {'@id': '?s', 'ex:name': '?name'}, '@select': '?name'}"));
+        assertEquals(select("?name").where(where), pattern);
+    }
+
+    @Test void testGroupDecidedByGraph() throws IOException
+    {
+        final Pattern group = patternReader().readValue(json("{'@graph': {'@id': '?s', 'ex:name': '?name'}}"));
+        assertEquals(Group.class, group.getClass());
+        // A group pattern keyword before any property decides a group, which has no properties
+        assertThrows(JsonMappingException.class, () -> patternReader().readValue(
+            json("{'@graph': {'@id': '?s', 'ex:name': '?name'}, 'ex:age': 40}")));
+    }
+
+    @Test void testUndecidableType()
+    {
+        final IllegalArgumentException queryError = assertThrows(IllegalArgumentException.class,
+            () -> queryReader().readValue(json("{'@context': {}, '@where': {'@id': '?s', 'ex:name': '?name'}}")));
+        assertTrue(queryError.getMessage().startsWith("Expected one of [@select"), queryError.getMessage());
+
+        final IllegalArgumentException patternError = assertThrows(IllegalArgumentException.class,
+            () -> patternReader().readValue(json("{'@where': {'@id': '?s'}, '@limit': 10}")));
+        assertTrue(patternError.getMessage().startsWith("Expected one of [@select"), patternError.getMessage());
+    }
+
+    private static String json(String singleQuoted)
+    {
+        return singleQuoted.replace('\'', '"');
+    }
+}
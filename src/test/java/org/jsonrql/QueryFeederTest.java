@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryFeederTest
+{
+    private static final String QUERY = "{\"@select\": \"?s\", \"@where\": {\"@id\": \"?s\"," +
+        "\"http://example.org/name\": \"Renée 😀\"}}";
+    private static final Select EXPECTED = select("?s")
+        .where(subject("?s").with("http://example.org/name", literal("Renée 😀")));
+
+    @Test void testSplitAtEveryByte() throws IOException
+    {
+        final byte[] json = QUERY.getBytes(UTF_8);
+        for (int split = 0; split < json.length; split++)
+        {
+            final QueryFeeder feeder = new QueryFeeder();
+            assertFalse(feeder.feed(ByteBuffer.wrap(json, 0, split)));
+            assertTrue(feeder.feed(ByteBuffer.wrap(json, split, json.length - split)));
+            assertEquals(EXPECTED, feeder.end(), "split at " + split);
+        }
+    }
+
+    @Test void testByteAtATime() throws IOException
+    {
+        final byte[] json = ("  " + QUERY + "\n").getBytes(UTF_8);
+        final QueryFeeder feeder = new QueryFeeder();
+        for (byte b : json)
+            feeder.feed(ByteBuffer.wrap(new byte[] { b }));
+        assertEquals(EXPECTED, feeder.end());
+    }
+
+    @Test void testTruncated() throws IOException
+    {
+        final byte[] json = QUERY.getBytes(UTF_8);
+        for (int length : new int[] { 0, 1, json.length - 1 })
+        {
+            final QueryFeeder feeder = new QueryFeeder();
+            assertFalse(feeder.feed(ByteBuffer.wrap(json, 0, length)));
+            assertThrows(IOException.class, feeder::end, "truncated to " + length);
+        }
+    }
+
+    @Test void testTrailingContent() throws IOException
+    {
+        final QueryFeeder feeder = new QueryFeeder();
+        assertTrue(feeder.feed(ByteBuffer.wrap(QUERY.getBytes(UTF_8))));
+        final JsonMappingException e = assertThrows(JsonMappingException.class,
+            () -> feeder.feed(ByteBuffer.wrap(" {}".getBytes(UTF_8))));
+        assertEquals("Unexpected content after query", e.getOriginalMessage());
+    }
+}
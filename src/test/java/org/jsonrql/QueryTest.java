@@ -14,6 +14,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -29,13 +32,42 @@ class QueryTest
     @MethodSource("testCases")
     void testAll(URL testCase) throws IOException
     {
-        final Query javaJsonRql = objectMapper.readValue(testCase, Query.class);
+        final Query<?> javaJsonRql = objectMapper.readValue(testCase, Query.class);
         final String genJsonRql = objectMapper.writeValueAsString(javaJsonRql);
 
         assertEquals(objectMapper.readValue(testCase, ObjectNode.class),
                      objectMapper.readValue(genJsonRql, ObjectNode.class));
     }
 
+    @ParameterizedTest
+    @MethodSource("testCases")
+    void testSmile(URL testCase) throws IOException
+    {
+        final Query<?> javaJsonRql = objectMapper.readValue(testCase, Query.class);
+        final byte[] smile = JsonRqlSmile.writer().writeValueAsBytes(javaJsonRql);
+        final Query<?> smileJsonRql = JsonRqlSmile.queryReader().readValue(smile);
+
+        assertEquals(javaJsonRql, smileJsonRql);
+        assertEquals(objectMapper.readValue(testCase, ObjectNode.class),
+                     objectMapper.readValue(objectMapper.writeValueAsString(smileJsonRql), ObjectNode.class));
+    }
+
+    @ParameterizedTest
+    @MethodSource("testCases")
+    void testFeeder(URL testCase) throws IOException
+    {
+        final Query<?> javaJsonRql = objectMapper.readValue(testCase, Query.class);
+        final ByteBuffer json = ByteBuffer.wrap(Files.readAllBytes(Paths.get(testCase.getPath())));
+        final QueryFeeder feeder = new QueryFeeder();
+        // Feed in small chunks, to split tokens across buffers
+        for (int pos = 0; pos < json.capacity(); pos += 7)
+        {
+            json.limit(Math.min(pos + 7, json.capacity())).position(pos);
+            feeder.feed(json.slice());
+        }
+        assertEquals(javaJsonRql, feeder.end());
+    }
+
     private static Stream<URL> testCases() throws IOException
     {
         @SuppressWarnings("unchecked") final Set<String> testNames =
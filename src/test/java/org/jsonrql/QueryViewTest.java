@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Context.termDef;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryViewTest
+{
+    @Test void testQueryView() throws IOException
+    {
+        final Select query = select("?name")
+            .where(subject(var("fred")).with("name", var("name")).with("http://example.org/age", literal(40)),
+                   union(subject(var("fred")).with("nick", var("name"))))
+            .context(context()
+                         .with("name", termDef("http://example.org/name"))
+                         .with("nick", termDef("http://example.org/nick")));
+        final byte[] json = ("  " + query + "  ").getBytes(UTF_8);
+        final QueryView view = new QueryView(json, 2, json.length - 4);
+        assertEquals(Select.class, view.type());
+        assertEquals(query.context(), view.context());
+        assertEquals(new HashSet<>(asList("name", "http://example.org/age")), view.predicates());
+        assertEquals(query.where(), view.where());
+        assertEquals(query, view.query());
+    }
+
+    @Test void testGroupPredicates() throws IOException
+    {
+        // Only the properties of top-level subjects are found, not those of a group's subjects
+        final QueryView view = new QueryView(json(
+            "{'@select': '?s', '@where': [{'@id': '?s', 'ex:p': '?o'}, " +
+                "{'@graph': {'@id': '?s', 'ex:q': '?o'}}, {'@union': [{'@id': '?s', 'ex:r': '?o'}]}]}"));
+        assertEquals(new HashSet<>(asList("ex:p")), view.predicates());
+        assertEquals(3, view.where().size());
+        assertEquals(Group.class, view.where().get(1).getClass());
+        assertEquals(Group.class, view.where().get(2).getClass());
+    }
+
+    @Test void testMalformed()
+    {
+        assertThrows(JsonParseException.class, () -> new QueryView(json("{'@select': '?s', '@where': ")));
+        assertThrows(JsonMappingException.class, () -> new QueryView(json("['@select']")));
+    }
+
+    @Test void testNoQueryClause()
+    {
+        final JsonMappingException e = assertThrows(JsonMappingException.class,
+            () -> new QueryView(json("{'@context': {}, '@where': {'@id': '?s'}}")));
+        assertTrue(e.getOriginalMessage().startsWith("Expected one of [@select"), e.getOriginalMessage());
+    }
+
+    @Test void testTrailingContent() throws IOException
+    {
+        final JsonMappingException e = assertThrows(JsonMappingException.class,
+            () -> new QueryView(json("{'@select': '?s', '@where': {'@id': '?s'}} {}")));
+        assertEquals("Unexpected content after query", e.getOriginalMessage());
+        // Content outside the view is not considered
+        final byte[] json = json("{'@select': '?s', '@where': {'@id': '?s'}} {}");
+        assertEquals(Select.class, new QueryView(json, 0, json.length - 3).type());
+    }
+
+    private static byte[] json(String singleQuoted)
+    {
+        return singleQuoted.replace('\'', '"').getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RewriterTest
+{
+    @Test void testRewriter()
+    {
+        final List<Subject> visited = new ArrayList<>();
+        final Rewriter unwrap = new Rewriter.BottomUp()
+        {
+            @Override protected Pattern map(Group group)
+            {
+                // A union of one pattern is just the pattern
+                return group.union().filter(union -> union.size() == 1 && !group.graph().isPresent())
+                    .map(union -> union.get(0)).orElse(group);
+            }
+
+            @Override protected Subject map(Subject subject)
+            {
+                visited.add(subject);
+                return subject;
+            }
+        };
+        final Subject wilma = subject(var("wife")).with("http://example.org/name", "Wilma");
+        final Group either = union(wilma, subject("http://example.org/fred"));
+        final Select rewritten = (Select)unwrap.rewrite(select("?wife").where(union(union(wilma)), either));
+        assertEquals(asList(wilma, either), rewritten.where());
+        assertSame(wilma, rewritten.where().get(0));
+        assertSame(either, rewritten.where().get(1));
+        // The shared subject is only rewritten once
+        assertEquals(2, visited.size());
+
+        final Rewriter decrement = pattern -> ((Select)pattern).limit().filter(limit -> limit > 0)
+            .map(limit -> (Pattern)((Select)pattern).limit(limit - 1)).orElse(pattern);
+        assertEquals(select("?wife").where(wilma).limit(0),
+                     unwrap.then(decrement.fixpoint(4)).rewrite(select("?wife").where(union(wilma)).limit(3)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> decrement.fixpoint(2).rewrite(select("?wife").where(wilma).limit(3)));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Name.name;
+
+/**
+ * Measures the retained heap per subject of the compact {@link PropertyMap}, against the hash map of
+ * unmodifiable lists that subjects held their properties in before, for subjects of one to four properties
+ * of which most are single-valued. Keys and values are shared, so only the storage itself is measured. Not
+ * run as a test; run the main method with the number of subjects (default 200000) as an optional argument.
+ */
+public class SubjectMemoryBenchmark
+{
+    private static final int PREDICATES = 20, LITERALS = 1000;
+
+    public static void main(String[] args)
+    {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final List<Map<Id, List<Value>>> properties = properties(count, new Random(42));
+
+        System.out.printf("HashMap of lists: %.1f bytes per subject%n", bytesPerSubject(count, i -> {
+            final Map<Id, List<Value>> before = new HashMap<>();
+            properties.get(i).forEach((key, values) -> before.put(key, unmodifiableList(new ArrayList<>(values))));
+            return before;
+        }));
+        System.out.printf("PropertyMap: %.1f bytes per subject%n",
+                          bytesPerSubject(count, i -> new PropertyMap(properties.get(i))));
+        System.out.printf("Subject: %.1f bytes per subject%n", bytesPerSubject(count, i -> {
+            final Subject.Builder builder = Subject.builder();
+            properties.get(i).forEach((key, values) -> builder.with(key, values.toArray(new Value[0])));
+            return builder.build();
+        }));
+    }
+
+    private static List<Map<Id, List<Value>>> properties(int count, Random random)
+    {
+        final Name[] predicates = new Name[PREDICATES];
+        for (int p = 0; p < PREDICATES; p++)
+            predicates[p] = name("http://example.org/p" + p);
+        final Literal[] literals = new Literal[LITERALS];
+        for (int l = 0; l < LITERALS; l++)
+            literals[l] = literal(l);
+
+        final List<Map<Id, List<Value>>> properties = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            final Map<Id, List<Value>> subject = new HashMap<>();
+            for (int p = 1 + random.nextInt(4); p > 0; p--)
+            {
+                final Literal value = literals[random.nextInt(LITERALS)];
+                // One in eight properties has two values
+                subject.put(predicates[random.nextInt(PREDICATES)], random.nextInt(8) == 0 ?
+                    asList(value, literals[random.nextInt(LITERALS)]) : singletonList(value));
+            }
+            properties.add(subject);
+        }
+        return properties;
+    }
+
+    private static double bytesPerSubject(int count, IntFunction<Object> create)
+    {
+        final Object[] retained = new Object[count];
+        final long before = usedMemory();
+        for (int i = 0; i < count; i++)
+            retained[i] = create.apply(i);
+        final long used = usedMemory() - before;
+        if (retained[count - 1] == null)
+            throw new AssertionError(); // Keeps the retained objects reachable until measured
+        return (double)used / count;
+    }
+
+    private static long usedMemory()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static org.jsonrql.Variable.matchVar;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VariableTest
+{
+    private static final Pattern VARIABLE = Pattern.compile("\\?([\\d\\w]+)");
+
+    @Test void testIsVar()
+    {
+        for (String str : asList("?a", "?_", "?a_1", "?A9", "?", "??", "", "a", "a?", "?a-b", "?a b", "?é", "?aé",
+                                 "?١", "? ", "?a?", "?-"))
+        {
+            final boolean expected = VARIABLE.matcher(str).matches();
+            assertEquals(expected, matchVar(str).isPresent(), str);
+            if (expected)
+                assertEquals(str.substring(1), matchVar(str).get().name());
+        }
+        assertTrue(matchVar("?_").isPresent());
+        assertFalse(matchVar("?").isPresent());
+        assertFalse(matchVar("?a-b").isPresent());
+        assertFalse(matchVar("?é").isPresent());
+        assertFalse(matchVar(1).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> var(""));
+        assertThrows(IllegalArgumentException.class, () -> var("a-b"));
+    }
+
+    @Test void testInterned()
+    {
+        final Variable fred = var("fred");
+        assertSame(fred, var("fred"));
+        assertSame(fred, matchVar("?fred").orElse(null));
+        final Variable early = var("early");
+        // Variables in recent use stay interned, however many others there are
+        for (int i = 0; i < 10000; i++)
+        {
+            assertEquals("v" + i, var("v" + i).name());
+            assertSame(fred, var("fred"));
+        }
+        // Interning is bounded, but a variable no longer interned is still equal
+        assertNotSame(early, var("early"));
+        assertEquals(early, var("early"));
+    }
+}
@@ -5,13 +5,55 @@
 
 package org.jsonrql.jena;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Prologue;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.update.UpdateAction;
 import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.jsonrql.Context;
+import org.jsonrql.JsonRqlModule;
 import org.jsonrql.Subject;
+import org.jsonrql.Update;
+import org.jsonrql.UpdateReader;
+import org.jsonrql.Value;
+import org.jsonrql.Variable;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static org.apache.jena.datatypes.xsd.XSDDatatype.XSDdouble;
+import static org.apache.jena.datatypes.xsd.XSDDatatype.XSDinteger;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.jsonrql.Construct.construct;
 import static org.jsonrql.Context.context;
+import static org.jsonrql.Context.termDef;
 import static org.jsonrql.Describe.describe;
 import static org.jsonrql.Distinct.distinct;
 import static org.jsonrql.Group.union;
@@ -23,9 +65,14 @@ import static org.jsonrql.Result.STAR;
 import static org.jsonrql.Select.select;
 import static org.jsonrql.Subject.subject;
 import static org.jsonrql.Update.delete;
+import static org.jsonrql.Update.insert;
 import static org.jsonrql.Variable.var;
+import static org.jsonrql.jena.JsonRqlJena.asPattern;
 import static org.jsonrql.jena.JsonRqlJena.asSparql;
+import static org.jsonrql.jsonld.JsonLd.asGraph;
+import static org.jsonrql.jsonld.JsonLd.asJsonLd;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JsonRqlJenaTest
@@ -75,9 +122,9 @@ class JsonRqlJenaTest
             QueryFactory.create(
                 "SELECT  ?p ?c\n" +
                     "WHERE\n" +
-                    "  { ?c  <http://xmlns.com/foaf/0.1/name>  \"York\"@en .\n" +
-                    "    ?p  <http://dbpedia.org/ontology/birthPlace>  ?c ;\n" +
-                    "        a                     <http://dbpedia.org/ontology/Artist>\n" +
+                    "  { ?p  a                     <http://dbpedia.org/ontology/Artist> ;\n" +
+                    "        <http://dbpedia.org/ontology/birthPlace>  ?c .\n" +
+                    "    ?c  <http://xmlns.com/foaf/0.1/name>  \"York\"@en\n" +
                     "  }"),
             asSparql(
                 select("?p", "?c")
@@ -95,18 +142,18 @@ class JsonRqlJenaTest
             QueryFactory.create(
                 "CONSTRUCT \n" +
                     "  { \n" +
-                    "    ?person <http://www.w3.org/2000/01/rdf-schema#label> ?name .\n" +
-                    "    ?person <http://dbpedia.org/ontology/birthPlace> ?city .\n" +
                     "    ?person <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://dbpedia.org/ontology/Artist> .\n" +
+                    "    ?person <http://dbpedia.org/ontology/birthPlace> ?city .\n" +
+                    "    ?person <http://www.w3.org/2000/01/rdf-schema#label> ?name .\n" +
                     "  }\n" +
                     "WHERE\n" +
-                    "  { ?person   <http://www.w3.org/2000/01/rdf-schema#label>  ?name ;\n" +
-                    "              <http://dbpedia.org/ontology/birthPlace>  ?city ;\n" +
-                    "              a                     <http://dbpedia.org/ontology/Artist> .\n" +
-                    "    ?city     <http://www.w3.org/2000/01/rdf-schema#label>  \"Ghent\"@en ;\n" +
-                    "              <http://www.w3.org/2000/01/rdf-schema#label>  ?cityName ;\n" +
-                    "              <http://dbpedia.org/ontology/country>  ?country .\n" +
-                    "    ?country  <http://www.w3.org/2000/01/rdf-schema#label>  \"Belgium\"@en\n" +
+                    "  { ?person   a                     <http://dbpedia.org/ontology/Artist> ;\n" +
+                    "              <http://dbpedia.org/ontology/birthPlace>  ?city .\n" +
+                    "    ?city     <http://dbpedia.org/ontology/country>  ?country .\n" +
+                    "    ?country  <http://www.w3.org/2000/01/rdf-schema#label>  \"Belgium\"@en .\n" +
+                    "    ?city     <http://www.w3.org/2000/01/rdf-schema#label>  ?cityName ;\n" +
+                    "              <http://www.w3.org/2000/01/rdf-schema#label>  \"Ghent\"@en .\n" +
+                    "    ?person   <http://www.w3.org/2000/01/rdf-schema#label>  ?name\n" +
                     "  }\n"),
             asSparql(
                 construct(
@@ -133,11 +180,11 @@ class JsonRqlJenaTest
             QueryFactory.create(
                 "SELECT DISTINCT  ?product ?label\n" +
                     "WHERE\n" +
-                    "  { ?product  <rdfs:label>          ?label ;\n" +
-                    "              <bsbm:productPropertyNumeric1>  ?value1 ;\n" +
-                    "              <bsbm:productFeature>  <bsbm-inst:ProductFeature814> ;\n" +
+                    "  { ?product  a                     <bsbm-inst:ProductType105> ;\n" +
+                    "              <rdfs:label>          ?label ;\n" +
                     "              <bsbm:productFeature>  <bsbm-inst:ProductFeature815> ;\n" +
-                    "              a                     <bsbm-inst:ProductType105>\n" +
+                    "              <bsbm:productFeature>  <bsbm-inst:ProductFeature814> ;\n" +
+                    "              <bsbm:productPropertyNumeric1>  ?value1\n" +
                     "    FILTER ( ?value1 > 486 )\n" +
                     "  }\n" +
                     "ORDER BY ?label\n" +
@@ -156,4 +203,293 @@ class JsonRqlJenaTest
                     .orderBy("?label")
                     .limit(10)));
     }
+
+    @Test void testPatternMatchesJsonLd()
+    {
+        final Context context = context()
+            .vocab(name("http://example.org/vocab#"))
+            .base(name("http://example.org/base/"))
+            .language("EN")
+            .prefix("ex", "http://example.org/ns#")
+            .prefix("xsd", "http://www.w3.org/2001/XMLSchema#")
+            .with("knows", termDef("ex:knows").isId())
+            .with("label", termDef("ex:label").language("fr"))
+            .with("size", termDef("ex:size").type(name("xsd:double")));
+        final Subject subject = subject("fred")
+            .type("Person")
+            .with("name", "Fred")
+            .with("label", "Frédéric")
+            .with("knows", "wilma", "ex:barney")
+            .with("size", literal(2))
+            .with("age", literal(40), literal(40.5), literal(true))
+            .with("ex:height", literal("1.8").type(id("xsd:decimal")))
+            .with("ex:friend", subject("?friend").with("name", "?friendName"), subject("ex:barney"));
+
+        final BasicPattern jsonLd = asPattern(asGraph(subject), asJsonLd(context));
+        final BasicPattern compiled = asPattern(subject, context);
+        assertEquals(jsonLd.size(), compiled.size());
+        assertTrue(graphOf(jsonLd).isIsomorphicWith(graphOf(compiled)));
+    }
+
+    @Test void testFilterOperators()
+    {
+        assertEquals(
+            QueryFactory.create(
+                "SELECT * WHERE\n" +
+                    "  { ?s <http://example.org/p> ?o ; <http://example.org/q> ?v ; <http://example.org/r> ?b\n" +
+                    "    FILTER ( ?o IN (<http://example.org/a>, \"b\", 4.5) )\n" +
+                    "    FILTER ( ?v NOT IN (1) )\n" +
+                    "    FILTER ( ?b && true && false )\n" +
+                    "  }\n" +
+                    "ORDER BY ?o"),
+            asSparql(
+                select(STAR)
+                    .where(
+                        subject("?s")
+                            .with("ex:p", filter("?o", "@in", name("ex:a"), literal("b"), literal(4.5)))
+                            .with("ex:q", filter("?v", "@notin", literal(1)))
+                            .with("ex:r", filter("?b", "@and", literal(true), literal(false))))
+                    .orderBy(var("o"))
+                    .context(context().prefix("ex", "http://example.org/"))));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test void testAsExpr()
+    {
+        assertEquals(SSE.parseExpr("?v"), SSE.parseExpr(JsonRqlJena.asExpr(var("v"))));
+        assertEquals(SSE.parseExpr("<http://example.org/a>"),
+                     SSE.parseExpr(JsonRqlJena.asExpr(name("http://example.org/a"))));
+        assertEquals(SSE.parseExpr("\"b \\\"c\\\"\"@en"),
+                     SSE.parseExpr(JsonRqlJena.asExpr(literal("b \"c\"").language("en"))));
+        assertEquals(SSE.parseExpr("4.5"), SSE.parseExpr(JsonRqlJena.asExpr(literal(4.5))));
+    }
+
+    @Test void testCachedTranslation()
+    {
+        final JsonRqlJenaCache cache = new JsonRqlJenaCache(100, 1000);
+        final Query query = cache.asSparql(select("?s").where(subject("?s").with("?p", "?o")));
+        assertEquals(QueryFactory.create("SELECT ?s WHERE { ?s  ?p  ?o}"), query);
+        query.setLimit(10); // Modifying the returned query must not affect the cache
+        assertEquals(QueryFactory.create("SELECT ?s WHERE { ?s  ?p  ?o}"),
+                     cache.asSparql(select("?s").where(subject("?s").with("?p", "?o"))));
+        assertTrue(UpdateFactory.create("DELETE WHERE {<meld:fred> ?p ?o}")
+                       .equalTo(cache.asSparql(delete(subject("meld:fred").with(var("p"), var("o"))))));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test void testPreparedQuery()
+    {
+        final JsonRqlJenaPrepared<Query> prepared = JsonRqlJena.prepare(
+            select("?name").where(subject("?id").with("foaf:name", "?name"))
+                .context(context().prefix("foaf", "http://xmlns.com/foaf/0.1/")));
+        assertEquals(QueryFactory.create("SELECT ?name WHERE { <meld:fred>  <http://xmlns.com/foaf/0.1/name>  ?name}"),
+                     prepared.bind("?id", name("meld:fred")));
+        assertEquals(QueryFactory.create("SELECT ?name WHERE { <meld:wilma>  <http://xmlns.com/foaf/0.1/name>  ?name}"),
+                     prepared.bind(var("id"), name("meld:wilma")));
+    }
+
+    @Test void testPreparedUpdate()
+    {
+        final JsonRqlJenaPrepared<UpdateRequest> prepared =
+            JsonRqlJena.prepare(delete(subject("?id").with(var("p"), var("o"))));
+        final Map<Variable, Value> bindings = new HashMap<>();
+        bindings.put(var("id"), name("meld:fred"));
+        bindings.put(var("o"), literal("Fred"));
+        assertTrue(UpdateFactory.create("DELETE WHERE {<meld:fred> ?p \"Fred\"}").equalTo(prepared.bind(bindings)));
+    }
+
+    @Test void testBatchedUpdates()
+    {
+        final Subject fred = subject("meld:fred").with("meld:name", literal("Fred")),
+            wilma = subject("meld:wilma").with("meld:name", literal("Wilma"));
+        final List<Update> updates = asList(
+            insert(fred), insert(wilma), delete(fred), delete(subject("meld:wilma").with(var("p"), var("o"))));
+
+        final long batchThreads = batchThreads();
+        assertTrue(UpdateFactory.create("INSERT DATA {<meld:fred> <meld:name> \"Fred\". " +
+                                            "<meld:wilma> <meld:name> \"Wilma\"};" +
+                                            "DELETE DATA {<meld:fred> <meld:name> \"Fred\"};" +
+                                            "DELETE WHERE {<meld:wilma> ?p ?o}")
+                       .equalTo(asSparql(updates.stream())));
+        // Translating a stream has no delay to time, so starts no scheduler
+        assertTrue(batchThreads() <= batchThreads);
+
+        final List<UpdateRequest> requests = new ArrayList<>();
+        try (JsonRqlJenaBatch batch = new JsonRqlJenaBatch(3, 1, MINUTES, requests::add))
+        {
+            batch.addAll(updates.stream());
+        }
+        assertEquals(2, requests.size());
+        assertEquals(2, requests.get(0).getOperations().size());
+        assertEquals(1, requests.get(1).getOperations().size());
+    }
+
+    @Test void testBatchedPartialDelete()
+    {
+        // Deleting more than one triple with no where clause deletes nothing unless all of them exist
+        final Subject fred = subject("meld:fred").with("meld:name", literal("Fred"));
+        final Update deleteAll = delete(subject("meld:fred").with("meld:name", literal("Fred"))
+                                            .with("meld:age", literal(40)));
+        final Graph data = GraphFactory.createGraphMem();
+        final List<UpdateRequest> requests = new ArrayList<>();
+        try (JsonRqlJenaBatch batch = new JsonRqlJenaBatch(10, 1, MINUTES, requests::add))
+        {
+            batch.add(insert(fred)).add(deleteAll);
+        }
+        assertEquals(1, requests.size());
+        UpdateAction.execute(requests.get(0), data);
+        assertTrue(data.contains(asPattern(fred, context()).get(0)));
+    }
+
+    @Test void testBatchFlushedAfterDelay() throws InterruptedException
+    {
+        final BlockingQueue<UpdateRequest> requests = new LinkedBlockingQueue<>();
+        try (JsonRqlJenaBatch batch = new JsonRqlJenaBatch(10, 10, MILLISECONDS, requests::add))
+        {
+            batch.add(insert(subject("meld:fred").with("meld:name", literal("Fred"))));
+            // Flushed by the scheduler, with no further activity
+            assertTrue(UpdateFactory.create("INSERT DATA {<meld:fred> <meld:name> \"Fred\"}")
+                           .equalTo(requests.poll(1, MINUTES)));
+        }
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test void testPrimitiveLiterals() throws IOException
+    {
+        final Subject reading = subject("http://example.org/reading")
+            .with("http://example.org/at", literal(1600000000000L))
+            .with("http://example.org/value", literal(new BigDecimal("12345678901234567890.5")))
+            .with("http://example.org/valid", literal(true));
+        assertEquals(reading, JsonRqlModule.subjectReader().readValue(reading.toString()));
+        final UpdateModify expected = (UpdateModify)UpdateFactory.create(
+            "INSERT { <http://example.org/reading> <http://example.org/at> 1600000000000 ; " +
+                "<http://example.org/value> \"1.2345678901234567E19\"^^<http://www.w3.org/2001/XMLSchema#double> ; " +
+                "<http://example.org/valid> true } WHERE {}").getOperations().get(0);
+        final UpdateModify actual = (UpdateModify)asSparql(insert(reading)).getOperations().get(0);
+        assertEquals(new HashSet<>(expected.getInsertQuads()), new HashSet<>(actual.getInsertQuads()));
+    }
+
+    @Test void testPlainNumberLiterals() throws IOException
+    {
+        // Too many digits for a long or a double, but typed as JSON-LD types any JSON number
+        final String json = "{\"@id\": \"http://example.org/reading\"," +
+            "\"http://example.org/count\": 123456789012345678901234567890," +
+            "\"http://example.org/value\": 0.12345678901234567890123}";
+        final Subject reading = JsonRqlModule.subjectReader().readValue(json);
+        assertEquals(reading, JsonRqlModule.subjectReader().readValue(reading.toString()));
+        assertTrue(reading.toString().contains("0.12345678901234567890123"));
+        final BasicPattern expected = new BasicPattern();
+        expected.add(Triple.create(createURI("http://example.org/reading"), createURI("http://example.org/count"),
+                                   createLiteral("123456789012345678901234567890", XSDinteger)));
+        expected.add(Triple.create(createURI("http://example.org/reading"), createURI("http://example.org/value"),
+                                   createLiteral("1.2345678901234568E-1", XSDdouble)));
+        assertEquals(new HashSet<>(expected.getList()), new HashSet<>(asPattern(reading, context()).getList()));
+
+        // Filter arguments are typed the same way
+        assertEquals(
+            QueryFactory.create(
+                "SELECT ?r WHERE { ?r <http://example.org/count> ?c ; <http://example.org/value> ?v\n" +
+                    "  FILTER ( ?c < 123456789012345678901234567890 )\n" +
+                    "  FILTER ( ?v > \"1.2345678901234568E-1\"^^<http://www.w3.org/2001/XMLSchema#double> ) }"),
+            asSparql(select("?r").where(
+                subject("?r")
+                    .with("http://example.org/count",
+                          filter("?c", "@lt", literal(new BigDecimal("123456789012345678901234567890"))))
+                    .with("http://example.org/value",
+                          filter("?v", "@gt", literal(new BigDecimal("0.12345678901234567890123")))))));
+    }
+
+    @Test void testPipeline() throws IOException
+    {
+        final List<String> lines = new ArrayList<>();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            final org.jsonrql.Query<?> jrql = i % 2 == 0 ?
+                select(var("s")).where(subject(var("s")).with("http://example.org/n", literal(i))) :
+                insert(subject("http://example.org/s" + i).with("http://example.org/n", literal(i)));
+            lines.add(jrql.toString().replace('\n', ' '));
+            expected.add(jrql instanceof Update ?
+                             asSparql((Update)jrql).toString() : asSparql((org.jsonrql.Read<?>)jrql).toString());
+        }
+        final Path ndjson = Files.write(Files.createTempFile("queries", ".ndjson"), lines, UTF_8);
+        try
+        {
+            final List<String> actual = new ArrayList<>();
+            final Consumer<Prologue> sink = sparql -> actual.add(sparql.toString());
+            new JsonRqlJenaPipeline(true).run(ndjson, sink);
+            assertEquals(expected, actual);
+
+            actual.clear();
+            new JsonRqlJenaPipeline(false).run(Files.newInputStream(ndjson), sink);
+            assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        }
+        finally
+        {
+            Files.delete(ndjson);
+        }
+    }
+
+    @Test void testStreamedUpdate() throws IOException
+    {
+        final String update = "{\"@context\": {\"ex\": \"http://example.org/\"}," +
+            "\"@delete\": {\"@id\": \"ex:fred\", \"ex:name\": \"Fred\"}," +
+            "\"@insert\": [{\"@id\": \"ex:fred\", \"ex:name\": \"Freddy\"}," +
+            "{\"@id\": \"ex:wilma\", \"ex:spouse\": {\"@id\": \"ex:fred\"}}]}";
+        final List<Triple> deleted = new ArrayList<>(), inserted = new ArrayList<>();
+        UpdateReader.read(new ByteArrayInputStream(update.getBytes(UTF_8)),
+                          new JsonRqlJenaUpdateHandler(deleted::add, inserted::add));
+
+        final UpdateRequest expected = asSparql(
+            insert(subject("ex:fred").with("ex:name", literal("Freddy")),
+                   subject("ex:wilma").with("ex:spouse", subject("ex:fred")))
+                .andDelete(subject("ex:fred").with("ex:name", literal("Fred")))
+                .context(context().prefix("ex", "http://example.org/")));
+        final UpdateModify modify = (UpdateModify)expected.getOperations().get(0);
+        assertEquals(modify.getDeleteQuads().stream().map(Quad::asTriple).collect(toList()), deleted);
+        assertEquals(modify.getInsertQuads().stream().map(Quad::asTriple).collect(toList()), inserted);
+    }
+
+    @Test void testStreamedUpdateRejected()
+    {
+        final List<Triple> loaded = new ArrayList<>();
+        final JsonRqlJenaUpdateHandler handler = new JsonRqlJenaUpdateHandler(loaded::add, loaded::add);
+        // A where clause must precede the data, so that it is rejected before any is loaded
+        assertThrows(JsonMappingException.class, () -> UpdateReader.read(new ByteArrayInputStream(
+            ("{\"@insert\": {\"@id\": \"http://example.org/fred\", \"http://example.org/name\": \"Fred\"}," +
+                "\"@where\": {\"@id\": \"?s\"}}").getBytes(UTF_8)), handler));
+        loaded.clear();
+        assertThrows(IllegalArgumentException.class, () -> UpdateReader.read(new ByteArrayInputStream(
+            ("{\"@where\": {\"@id\": \"?s\"}, \"@insert\": {\"@id\": \"http://example.org/fred\"," +
+                "\"http://example.org/name\": \"Fred\"}}").getBytes(UTF_8)), handler));
+        assertTrue(loaded.isEmpty());
+        // Data with a variable is rejected without loading any of the subject
+        assertThrows(IllegalArgumentException.class, () -> UpdateReader.read(new ByteArrayInputStream(
+            ("{\"@delete\": {\"@id\": \"http://example.org/fred\", \"http://example.org/name\": \"Fred\"," +
+                "\"http://example.org/age\": \"?age\"}}").getBytes(UTF_8)), handler));
+        assertTrue(loaded.isEmpty());
+        // A deleted blank node would be a fresh node matching nothing
+        final IllegalArgumentException blank = assertThrows(IllegalArgumentException.class,
+            () -> UpdateReader.read(new ByteArrayInputStream(
+                ("{\"@delete\": {\"@id\": \"http://example.org/fred\", \"http://example.org/name\": \"Fred\"," +
+                    "\"http://example.org/friend\": {\"http://example.org/name\": \"Barney\"}}}").getBytes(UTF_8)),
+                handler));
+        assertTrue(blank.getMessage().startsWith("Deleted data cannot contain blank nodes"), blank.getMessage());
+        assertTrue(loaded.isEmpty());
+    }
+
+    private static long batchThreads()
+    {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> "json-rql-batch".equals(thread.getName())).count();
+    }
+
+    private static Graph graphOf(BasicPattern pattern)
+    {
+        final Graph graph = GraphFactory.createGraphMem();
+        pattern.forEach(graph::add);
+        return graph;
+    }
 }
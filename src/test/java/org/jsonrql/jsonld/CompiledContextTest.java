@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.github.jsonldjava.core.JsonLdProcessor;
+import org.jsonrql.Context;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Context.termDef;
+import static org.jsonrql.Name.name;
+import static org.jsonrql.jsonld.JsonLd.asJsonLd;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CompiledContextTest
+{
+    @Test void testExpansionMatchesJsonLd()
+    {
+        final Context context = context()
+            .vocab(name("http://example.org/vocab#"))
+            .base(name("http://example.org/base/"))
+            .prefix("ex", "http://example.org/ns#")
+            .with("name", termDef("ex:name"))
+            .with("nick", termDef("name"))
+            .with("knows", termDef("ex:knows").isId())
+            .with("ex:age", termDef("http://example.org/age"));
+        final CompiledContext compiled = CompiledContext.compile(context);
+        for (String property : asList("name", "nick", "knows", "ex:age", "ex:height", "size", "http://other.org/p"))
+        {
+            for (String id : asList("fred", "ex:fred", "../wilma", "http://other.org/barney"))
+            {
+                final Map<String, Object> node = new HashMap<>();
+                node.put("@context", asJsonLd(context));
+                node.put("@id", id);
+                node.put(property, "value");
+                @SuppressWarnings("unchecked") final Map<String, Object> expanded =
+                    (Map<String, Object>)JsonLdProcessor.expand(node).get(0);
+                assertEquals(expanded.get("@id"), compiled.expandIri(id, true, false));
+                assertEquals(new HashSet<>(asList("@id", compiled.expandIri(property, false, true))),
+                             expanded.keySet());
+            }
+        }
+    }
+
+    @Test void testCompiledContextCached()
+    {
+        final Context context = context().prefix("ex", "http://example.org/");
+        final CompiledContext compiled = CompiledContext.compile(context);
+        // Cached by structural equality
+        assertSame(compiled, CompiledContext.compile(context().prefix("ex", "http://example.org/")));
+        // Expansions in recent use stay memoised, however many others there are
+        final String fred = compiled.expandIri("ex:fred", true, false);
+        for (int i = 0; i < 10000; i++)
+        {
+            assertEquals("http://example.org/" + i, compiled.expandIri("ex:" + i, true, false));
+            assertSame(fred, compiled.expandIri("ex:fred", true, false));
+        }
+
+        // Many other contexts evict the least recently used
+        for (int i = 0; i < 10000; i++)
+            CompiledContext.compile(context().prefix("ex" + i, "http://example.org/" + i));
+        assertNotSame(compiled, CompiledContext.compile(context));
+        final CompiledContext recompiled = CompiledContext.compile(context);
+        assertSame(recompiled, CompiledContext.compile(context));
+        assertEquals("http://example.org/fred", recompiled.expandIri("ex:fred", true, false));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.jsonld;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.jsonrql.Context;
+import org.jsonrql.Distinct;
+import org.jsonrql.JsonRqlModule;
+import org.jsonrql.Select;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Context.termDef;
+import static org.jsonrql.Distinct.distinct;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.InlineFilter.filter;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Variable.var;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonLdDocumentsTest
+{
+    @Test void testJsonLdDocuments() throws IOException
+    {
+        final String json = "[{\"@context\": {\"ex\": \"http://example.org/\", \"name\": \"ex:name\", " +
+            "\"age\": \"ex:age\", \"knows\": {\"@id\": \"ex:knows\", \"@type\": \"@id\"}}, \"@graph\": [" +
+            "{\"@id\": \"ex:fred\", \"@type\": \"ex:Person\", \"name\": \"Fred\", \"age\": 40, " +
+            "\"knows\": \"ex:wilma\", \"ex:address\": {\"ex:town\": \"Bedrock\"}}, " +
+            "{\"@id\": \"ex:wilma\", \"@type\": \"ex:Person\", " +
+            "\"name\": [\"Wilma\", {\"@value\": \"Vilma\", \"@language\": \"fi\"}], \"age\": 38}]}, " +
+            "{\"@id\": \"http://example.org/barney\", \"http://example.org/age\": 38.5}]";
+        final JsonLdDocuments documents = new JsonLdDocuments().add(JsonRqlModule.mapper().readTree(json));
+        final Context context = context().prefix("ex", "http://example.org/")
+            .with("name", termDef("ex:name")).with("age", termDef("ex:age"));
+
+        final Select young = select("?name").where(
+            subject("?s").type("ex:Person").with("name", var("name")).with("age", filter("?age", "@lt", literal(39))))
+            .context(context);
+        assertEquals(asList(singletonMap("name", jsonLd("{\"@value\": \"Wilma\"}")),
+                            singletonMap("name", jsonLd("{\"@value\": \"Vilma\", \"@language\": \"fi\"}"))),
+                     documents.select(young));
+
+        final Select related = select("?s").where(union(
+            subject("?s").with("ex:knows", var("o")),
+            subject("?s").with("ex:address", subject(var("a")).with("ex:town", literal("Bedrock")))))
+            .context(context);
+        assertEquals(2, documents.select(related).size());
+
+        final Distinct ages = distinct("?age").where(subject("?s").with("age", var("age")))
+            .orderBy("?age").limit(2).context(context);
+        assertEquals(asList(singletonMap("age", jsonLd("{\"@value\": 38}")),
+                            singletonMap("age", jsonLd("{\"@value\": 38.5}"))),
+                     documents.select(ages));
+
+        final Select aged = select("?s").where(subject("?s").with("age", literal(38))).context(context);
+        final List<Map<String, JsonNode>> unindexed = documents.select(aged);
+        assertEquals(1, unindexed.size());
+        assertEquals(unindexed, documents.index("http://example.org/age").select(aged));
+    }
+
+    @Test void testDocumentContexts() throws IOException
+    {
+        // The document's context is merged onto the given one, and a nested context applies only within its node
+        final String json = "{\"@context\": {\"name\": \"ex:name\"}, \"@id\": \"ex:fred\", \"name\": \"Fred\", " +
+            "\"town\": \"Nowhere\", \"ex:address\": {\"@context\": {\"town\": \"ex:town\"}, \"town\": \"Bedrock\"}}";
+        final Context context = context().prefix("ex", "http://example.org/");
+        final JsonLdDocuments documents = new JsonLdDocuments().add(JsonRqlModule.mapper().readTree(json), context);
+
+        final Select names = select("?name").where(subject("ex:fred").with("ex:name", var("name"))).context(context);
+        assertEquals(singletonList(singletonMap("name", jsonLd("{\"@value\": \"Fred\"}"))), documents.select(names));
+
+        final Select towns = select("?town").where(subject("?s").with("ex:town", var("town"))).context(context);
+        assertEquals(singletonList(singletonMap("town", jsonLd("{\"@value\": \"Bedrock\"}"))),
+                     documents.select(towns));
+        assertEquals(2, documents.size());
+    }
+
+    private static JsonNode jsonLd(String json) throws IOException
+    {
+        return JsonRqlModule.mapper().readTree(json);
+    }
+}
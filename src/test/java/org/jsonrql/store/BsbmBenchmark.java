@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.jsonrql.Context;
+import org.jsonrql.Read;
+import org.jsonrql.Subject;
+import org.jsonrql.jsonld.CompiledContext;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Distinct.distinct;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.InlineFilter.filter;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.jena.JsonRqlJena.asSparql;
+
+/**
+ * Times queries shaped like the Berlin SPARQL Benchmark's query 1 and query 4 against a store of generated
+ * products, both the where clause alone and the whole select, and against Jena's in-memory graph for
+ * comparison. Not run as a test; run the main method with the number of products (default 50000) as an
+ * optional argument.
+ */
+public class BsbmBenchmark
+{
+    private static final String BSBM = "http://www4.wiwiss.fu-berlin.de/bizer/bsbm/v01/vocabulary/";
+    private static final String BSBM_INST = "http://www4.wiwiss.fu-berlin.de/bizer/bsbm/v01/instances/";
+    private static final int TYPES = 20, FEATURES = 500, WARMUP = 50, RUNS = 100;
+
+    public static void main(String[] args)
+    {
+        final Graph data = products(args.length > 0 ? Integer.parseInt(args[0]) : 50000, new Random(42));
+        final JsonRqlStore store = new JsonRqlStore().add(data);
+        final Model model = ModelFactory.createModelForGraph(data);
+        System.out.printf("%d triples%n", store.size());
+
+        final Context context = context().prefix("bsbm", BSBM).prefix("bsbm-inst", BSBM_INST)
+            .prefix("rdfs", RDFS.getURI());
+        final Read<?> bsbm1 = distinct("?product", "?label")
+            .where(product("?value1", "bsbm-inst:ProductFeature1", "bsbm-inst:ProductFeature2",
+                           "bsbm:productPropertyNumeric1", 486))
+            .orderBy("?label").limit(10).context(context);
+        final Read<?> bsbm4 = distinct("?product", "?label")
+            .where(union(product("?p1", "bsbm-inst:ProductFeature1", "bsbm-inst:ProductFeature2",
+                                 "bsbm:productPropertyNumeric1", 136),
+                         product("?p2", "bsbm-inst:ProductFeature1", "bsbm-inst:ProductFeature3",
+                                 "bsbm:productPropertyNumeric2", 300)))
+            .orderBy("?label").offset(5).limit(10).context(context);
+
+        run("bsbm1", store, model, bsbm1);
+        run("bsbm4", store, model, bsbm4);
+    }
+
+    private static Subject product(String value, String feature1, String feature2, String property, int min)
+    {
+        return subject("?product")
+            .type("bsbm-inst:ProductType1")
+            .with("rdfs:label", "?label")
+            .with("bsbm:productFeature", subject(feature1), subject(feature2))
+            .with(property, filter(value, "@gt", literal(min)));
+    }
+
+    private static void run(String name, JsonRqlStore store, Model model, Read<?> read)
+    {
+        final Query query = asSparql(read);
+        final int storeCount = store.select(read).size();
+        final int jenaCount;
+        try (QueryExecution execution = QueryExecutionFactory.create(query, model))
+        {
+            jenaCount = ResultSetFormatter.consume(execution.execSelect());
+        }
+        if (storeCount != jenaCount)
+            throw new IllegalStateException(
+                String.format("%s: %d solutions but Jena has %d", name, storeCount, jenaCount));
+
+        final CompiledContext context = CompiledContext.compile(read.context());
+        System.out.printf("%s: store where %.2f ms, select %.2f ms, jena %.2f ms (median of %d)%n", name,
+                          median(() -> new Plan(store, read.where(), context).solutions().size()),
+                          median(() -> store.select(read).size()),
+                          median(() -> {
+                              try (QueryExecution execution = QueryExecutionFactory.create(query, model))
+                              {
+                                  return ResultSetFormatter.consume(execution.execSelect());
+                              }
+                          }), RUNS);
+    }
+
+    private static double median(Supplier<Integer> query)
+    {
+        for (int i = 0; i < WARMUP; i++)
+            query.get();
+        final long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++)
+        {
+            final long start = System.nanoTime();
+            query.get();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2] / 1e6;
+    }
+
+    private static Graph products(int count, Random random)
+    {
+        final Graph graph = GraphFactory.createGraphMem();
+        final Node type = RDF.type.asNode(), label = RDFS.label.asNode(),
+            feature = NodeFactory.createURI(BSBM + "productFeature");
+        for (int i = 0; i < count; i++)
+        {
+            final Node product = NodeFactory.createURI(BSBM_INST + "Product" + i);
+            graph.add(Triple.create(product, type,
+                                    NodeFactory.createURI(BSBM_INST + "ProductType" + random.nextInt(TYPES))));
+            graph.add(Triple.create(product, label, NodeFactory.createLiteral("Product " + i)));
+            for (int f = 5 + random.nextInt(10); f > 0; f--)
+            {
+                // Skewed, so that the features used by the queries are common
+                final int id = (int)(FEATURES * Math.pow(random.nextDouble(), 3));
+                graph.add(Triple.create(product, feature, NodeFactory.createURI(BSBM_INST + "ProductFeature" + id)));
+            }
+            for (int n = 1; n <= 3; n++)
+                graph.add(Triple.create(product, NodeFactory.createURI(BSBM + "productPropertyNumeric" + n),
+                    NodeFactory.createLiteral(String.valueOf(1 + random.nextInt(2000)), XSDDatatype.XSDinteger)));
+        }
+        return graph;
+    }
+}
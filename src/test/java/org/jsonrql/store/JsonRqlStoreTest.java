@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) George Svarovsky 2020. All rights reserved.
+ * Licensed under the MIT License. See LICENSE file in the project root for full license information.
+ */
+
+package org.jsonrql.store;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.update.UpdateAction;
+import org.jsonrql.Construct;
+import org.jsonrql.Context;
+import org.jsonrql.Describe;
+import org.jsonrql.Distinct;
+import org.jsonrql.Read;
+import org.jsonrql.Select;
+import org.jsonrql.Subject;
+import org.jsonrql.Update;
+import org.jsonrql.jsonld.CompiledContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.jsonrql.Construct.construct;
+import static org.jsonrql.Context.context;
+import static org.jsonrql.Describe.describe;
+import static org.jsonrql.Distinct.distinct;
+import static org.jsonrql.Group.union;
+import static org.jsonrql.InlineFilter.filter;
+import static org.jsonrql.Literal.literal;
+import static org.jsonrql.Select.select;
+import static org.jsonrql.Subject.subject;
+import static org.jsonrql.Update.delete;
+import static org.jsonrql.Variable.var;
+import static org.jsonrql.jena.JsonRqlJena.asPattern;
+import static org.jsonrql.jena.JsonRqlJena.asSparql;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonRqlStoreTest
+{
+    @Test void testStore()
+    {
+        final Context context = context().prefix("ex", "http://example.org/");
+        final Graph data = graphOf(asPattern(asList(
+            subject("ex:fred").with("ex:name", literal("Fred")).with("ex:age", literal(40))
+                .with("ex:spouse", subject("ex:wilma"))
+                .with("ex:address", Subject.builder().with("ex:town", literal("Bedrock")).build()),
+            subject("ex:wilma").with("ex:name", literal("Wilma")).with("ex:age", literal(38)),
+            subject("ex:barney").with("ex:name", literal("Barney")).with("ex:age", literal(38))
+                .with("ex:nick", literal("Barn"))), context));
+        final JsonRqlStore store = new JsonRqlStore().add(data);
+        assertEquals(data.size(), store.size());
+
+        final Select older = select("?name").where(
+            subject("?s").with("ex:name", var("name")).with("ex:age", filter("?age", "@gte", literal(38.5))))
+            .context(context);
+        assertEquals(new HashSet<>(jenaSelect(older, data)), new HashSet<>(store.select(older)));
+
+        final Select named = select("?s", "?name").where(
+            union(subject("?s").with("ex:name", var("name")), subject("?s").with("ex:nick", var("name"))))
+            .context(context);
+        assertEquals(new HashSet<>(jenaSelect(named, data)), new HashSet<>(store.select(named)));
+
+        final Distinct ages = distinct("?age").where(subject("?s").with("ex:age", var("age")))
+            .orderBy("?age").limit(1).context(context);
+        assertEquals(jenaSelect(ages, data), store.select(ages));
+
+        final Construct spouses =
+            construct(subject("?w").with("ex:spouse", subject("?h")))
+                .where(subject("?h").with("ex:spouse", subject("?w"))).context(context);
+        assertTrue(QueryExecutionFactory.create(asSparql(spouses), ModelFactory.createModelForGraph(data))
+                       .execConstruct().getGraph().isIsomorphicWith(store.construct(spouses)));
+
+        final Describe fred = describe("ex:fred").context(context);
+        assertTrue(QueryExecutionFactory.create(asSparql(fred), ModelFactory.createModelForGraph(data))
+                       .execDescribe().getGraph().isIsomorphicWith(store.describe(fred)));
+
+        final Update birthday = delete(subject("?s").with("ex:age", var("age")))
+            .andInsert(subject("?s").with("ex:age", literal(39)))
+            .where(subject("?s").with("ex:age", literal(38))).context(context);
+        UpdateAction.execute(asSparql(birthday), data);
+        store.update(birthday);
+        assertTrue(data.isIsomorphicWith(store.graph()));
+        assertEquals(new HashSet<>(jenaSelect(older, data)), new HashSet<>(store.select(older)));
+    }
+
+    @Test void testStoreJoins()
+    {
+        // Enough products for several batches, joined by merge, hash and index joins
+        final Context context = context().prefix("ex", "http://example.org/");
+        final List<Subject> products = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            products.add(subject("ex:product" + i).type("ex:Product").with("ex:label", literal("Product " + i))
+                             .with("ex:feature", subject("ex:feature" + i % 3), subject("ex:feature" + (3 + i % 5)))
+                             .with("ex:numeric", literal(i % 1000)));
+        final Graph data = graphOf(asPattern(products, context));
+        final JsonRqlStore store = new JsonRqlStore().add(data);
+
+        final Select featured = select("?product", "?label").where(
+            subject("?product").type("ex:Product").with("ex:label", var("label"))
+                .with("ex:feature", subject("ex:feature1"), subject("ex:feature4"))
+                .with("ex:numeric", filter("?n", "@gt", literal(486)))).context(context);
+        final List<Map<String, Node>> expected = jenaSelect(featured, data);
+        assertEquals(170, expected.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(store.select(featured)));
+
+        final Select either = select("?product", "?label").where(
+            subject("?product").with("ex:label", var("label")), union(
+                subject("?product").with("ex:feature", subject("ex:feature2")),
+                subject("?product").with("ex:feature", subject("ex:feature7"))
+                    .with("ex:numeric", filter("?n", "@lt", literal(100))))).context(context);
+        assertEquals(new HashSet<>(jenaSelect(either, data)), new HashSet<>(store.select(either)));
+
+        // Merge joined while the solutions are sorted by product, then index joined
+        assertEquals(asList(Scan.class, MergeJoin.class, MergeJoin.class, IndexJoin.class, IndexJoin.class),
+                     operators(store, featured));
+        // Each union branch hash joins the labels with its feature, which is cheaper to scan than to probe
+        assertEquals(asList(Scan.class, HashJoin.class, HashJoin.class, IndexJoin.class), operators(store, either));
+    }
+
+    private static List<Class<? extends Operator>> operators(JsonRqlStore store, Read<?> query)
+    {
+        final Plan plan = new Plan(store, query.where(), CompiledContext.compile(query.context()));
+        plan.solutions();
+        return plan.operators();
+    }
+
+    private static List<Map<String, Node>> jenaSelect(Read<?> query, Graph data)
+    {
+        final List<Map<String, Node>> solutions = new ArrayList<>();
+        QueryExecutionFactory.create(asSparql(query), ModelFactory.createModelForGraph(data))
+            .execSelect().forEachRemaining(solution -> {
+            final Map<String, Node> map = new LinkedHashMap<>();
+            solution.varNames().forEachRemaining(name -> map.put(name, solution.get(name).asNode()));
+            solutions.add(map);
+        });
+        return solutions;
+    }
+
+    private static Graph graphOf(BasicPattern pattern)
+    {
+        final Graph graph = GraphFactory.createGraphMem();
+        pattern.forEach(graph::add);
+        return graph;
+    }
+}